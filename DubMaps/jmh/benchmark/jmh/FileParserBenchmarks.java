@@ -0,0 +1,91 @@
+package benchmark.jmh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.CompiledMap;
+import model.FileParser;
+import model.FileWriter;
+import model.MapGraph;
+
+/*
+ * FileParserBenchmarks times loading a generated map from its three text files with
+ * FileParser against reading the same map compiled by CompiledMap. The text files are written
+ * to src/data under a name no bundled map uses and deleted afterwards
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileParserBenchmarks {
+	private static final String PATH = "src/data/";
+	private static final String[] SUFFIXES = { "_paths.dat", "_buildings.dat", "_labels.dat" };
+
+	@Param({ "grid", "geometric" })
+	public String shape;
+
+	@Param({ "10000", "100000" })
+	public int size;
+
+	private String name;  // the name of the generated map's text files
+	private File compiled;
+
+	/**
+	 * Writes the generated map as text files and as a compiled map
+	 * @throws IOException Indicates the files could not be written
+	 */
+	@Setup(Level.Trial)
+	public void writeMap() throws IOException {
+		MapGraph graph = GeneratedMaps.generate(shape, size);
+		name = "jmh_" + shape + "_" + size;
+		FileWriter.write(graph.publish(), name);
+		compiled = File.createTempFile(name, ".map");
+		CompiledMap.write(graph, compiled.getPath());
+	}
+
+	/**
+	 * Deletes the files written by writeMap
+	 */
+	@TearDown(Level.Trial)
+	public void deleteMap() {
+		for (String suffix: SUFFIXES)
+			new File(PATH + name + suffix).delete();
+		compiled.delete();
+	}
+
+	/**
+	 * Parses the map's text files
+	 * @return the parsed graph
+	 */
+	@Benchmark
+	public MapGraph parseText() {
+		return new FileParser(name, false).getGraph();
+	}
+
+	/**
+	 * Reads the compiled map
+	 * @return the graph read
+	 * @throws IOException Indicates the compiled map could not be read
+	 */
+	@Benchmark
+	public MapGraph readCompiled() throws IOException {
+		return CompiledMap.read(compiled.getPath());
+	}
+}
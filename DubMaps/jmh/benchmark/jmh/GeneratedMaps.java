@@ -0,0 +1,31 @@
+package benchmark.jmh;
+
+import benchmark.GraphGenerator;
+import model.MapGraph;
+
+/*
+ * GeneratedMaps builds the synthetic maps the JMH benchmarks are parameterized over, the same
+ * street grids and random geometric graphs BenchmarkSuite measures, from a fixed seed so every
+ * fork measures the same map
+ */
+final class GeneratedMaps {
+	static final long SEED = 3;
+
+	// private constructor, only static methods are used
+	private GeneratedMaps() {}
+
+	/**
+	 * Returns a generated map
+	 * @param shape: "grid" for a street grid, or "geometric" for a random geometric graph
+	 * @param size: The number of nodes
+	 * @return the generated graph, published
+	 * @throws IllegalArgumentException if shape is neither kind of map
+	 */
+	static MapGraph generate(String shape, int size) {
+		if (shape.equals("grid"))
+			return GraphGenerator.grid(size, 20, SEED);
+		if (shape.equals("geometric"))
+			return GraphGenerator.randomGeometric(size, 20 * Math.sqrt(size), 6, SEED);
+		throw new IllegalArgumentException("unknown map shape " + shape);
+	}
+}
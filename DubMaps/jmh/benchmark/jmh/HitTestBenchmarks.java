@@ -0,0 +1,95 @@
+package benchmark.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * HitTestBenchmarks times the nearest node and nearest building lookups made as the mouse
+ * moves, at random points within a generated map's bounds, with the map maker's and the
+ * navigator's search radius respectively
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HitTestBenchmarks {
+	private static final int POINTS = 10000;
+	private static final int NAVIGATOR_RADIUS = 100, MAP_MAKER_RADIUS = 8;
+
+	@Param({ "grid", "geometric" })
+	public String shape;
+
+	@Param({ "10000", "100000" })
+	public int size;
+
+	private MapGraph graph;
+	private int[] xs, ys;  // the points queried, in turn
+	private int next;  // the index of the point queried by the next call
+
+	/**
+	 * Generates the map and the points to query
+	 */
+	@Setup(Level.Trial)
+	public void generate() {
+		graph = GeneratedMaps.generate(shape, size);
+		double width = 0, height = 0;
+		for (Location l: graph.getAllLocations()) {
+			width = Math.max(width, l.getX());
+			height = Math.max(height, l.getY());
+		}
+		Random random = new Random(GeneratedMaps.SEED);
+		xs = new int[POINTS];
+		ys = new int[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			xs[i] = (int) (random.nextDouble() * width);
+			ys[i] = (int) (random.nextDouble() * height);
+		}
+		next = 0;
+	}
+
+	/**
+	 * Finds the path node or entrance nearest the next point, as the map maker does
+	 * @return the node found, or null
+	 */
+	@Benchmark
+	public Node<Location> getClosestNode() {
+		int i = advance();
+		return graph.getClosestNode(xs[i], ys[i], MAP_MAKER_RADIUS);
+	}
+
+	/**
+	 * Finds the entrance nearest the next point, as the navigator does
+	 * @return the entrance found, or null
+	 */
+	@Benchmark
+	public Node<Location> getClosestBuilding() {
+		int i = advance();
+		return graph.getClosestBuilding(xs[i], ys[i], NAVIGATOR_RADIUS);
+	}
+
+	// returns the index of the next point to query
+	private int advance() {
+		int i = next;
+		next = (next + 1) % POINTS;
+		return i;
+	}
+}
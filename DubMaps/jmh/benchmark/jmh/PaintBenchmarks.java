@@ -0,0 +1,102 @@
+package benchmark.jmh;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.Display;
+import controller.LabelCache;
+import controller.MapManager;
+import controller.UIManager;
+import model.Edge;
+import model.Location;
+import model.MapGraph;
+
+/*
+ * PaintBenchmarks times the per-paint work that grows with what is on screen: scaling a route
+ * of count edges to display pixels with UIManager.getPath, and drawing count building labels
+ * from LabelCache. Both draw into an offscreen image of a fixed window size, so no display is
+ * needed. Routes longer than the one found on the generated grid repeat it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PaintBenchmarks {
+	private static final String MAP_IMAGE = "src/data/UWBothell.jpg";
+	private static final int WIDTH = 1280, HEIGHT = 800, SIZE = 10000;
+
+	@Param({ "10", "100", "1000", "10000" })
+	public int count;
+
+	private UIManager ui;
+	private LabelCache labelCache;
+	private Graphics2D g;
+	private List<Edge<Location>> route;  // count edges
+	private List<Location> labels;  // count labels
+
+	/**
+	 * Loads the bundled map image and picks the route and labels drawn
+	 */
+	@Setup(Level.Trial)
+	public void prepare() {
+		MapGraph graph = GeneratedMaps.generate("grid", SIZE);
+		Display.setMapImage(MAP_IMAGE);
+		ui = new UIManager(new MapManager(WIDTH, HEIGHT));
+		labelCache = new LabelCache(ui, 2);
+		g = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB).createGraphics();
+
+		List<Edge<Location>> found = graph.getPath(graph.getAllNodes().get(0),
+				graph.getAllNodes().get(graph.getAllNodes().size() - 1));
+		route = new ArrayList<Edge<Location>>(count);
+		while (route.size() < count)
+			route.addAll(found.subList(0, Math.min(found.size(), count - route.size())));
+		List<Location> locations = graph.getAllLocations();
+		labels = new ArrayList<Location>(locations.subList(0, count));
+	}
+
+	/**
+	 * Releases the offscreen image's graphics context
+	 */
+	@TearDown(Level.Trial)
+	public void dispose() {
+		g.dispose();
+	}
+
+	/**
+	 * Scales the route to display pixels
+	 * @return the scaled points
+	 */
+	@Benchmark
+	public List<int[]> scaleRoute() {
+		return ui.getPath(route);
+	}
+
+	/**
+	 * Draws the labels
+	 * @return the labels drawn
+	 */
+	@Benchmark
+	public List<Location> drawLabels() {
+		labelCache.draw(g, labels);
+		return labels;
+	}
+}
@@ -0,0 +1,74 @@
+package benchmark.jmh;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmark.RoutingBenchmark;
+import model.Edge;
+import model.Location;
+import model.MapGraph;
+import model.MapGraph.RoutingMode;
+import model.Node;
+
+/*
+ * PathBenchmarks times MapGraph.getPath between a fixed random set of buildings on generated
+ * maps, with each search the navigator and map maker choose between. Each call routes the
+ * next pair in turn, so the average is over every pair
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathBenchmarks {
+	private static final int PAIRS = 100;
+
+	@Param({ "grid", "geometric" })
+	public String shape;
+
+	@Param({ "10000", "100000" })
+	public int size;
+
+	@Param({ "DIJKSTRA", "BIDIRECTIONAL_A_STAR" })
+	public RoutingMode mode;
+
+	private MapGraph graph;
+	private List<Node<Location>[]> pairs;
+	private int next;  // the index of the pair routed by the next call
+
+	/**
+	 * Generates the map and picks the pairs to route between
+	 */
+	@Setup(Level.Trial)
+	public void generate() {
+		graph = GeneratedMaps.generate(shape, size);
+		pairs = RoutingBenchmark.randomPairs(graph, PAIRS, GeneratedMaps.SEED);
+		graph.getCompactGraph();  // built once per graph version, outside the timed calls
+		next = 0;
+	}
+
+	/**
+	 * Routes the next pair
+	 * @return the route found
+	 */
+	@Benchmark
+	public List<Edge<Location>> getPath() {
+		Node<Location>[] p = pairs.get(next);
+		next = (next + 1) % pairs.size();
+		return graph.getPath(p[0], p[1], mode);
+	}
+}
@@ -0,0 +1,224 @@
+package benchmark.jmh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import benchmark.RoutingBenchmark;
+import model.Edge;
+import model.Location;
+import model.MapGraph;
+import model.MapGraph.RoutingMode;
+import model.Node;
+import model.RouteExecutor;
+
+/*
+ * RouteExecutorBenchmarks measures how RouteExecutor.route throughput scales with the number
+ * of threads querying one executor at once, on the generated grid. Every thread routes through
+ * the same executor and so shares its pool of PathFinders, each starting at a different pair.
+ * The routeOn methods run the same query on 1, 2, 4 and 8 threads and on one thread per
+ * processor. Run main, with any JMH options, to run them all and print each thread count's
+ * throughput with its speedup over one thread and its efficiency per thread. The speedup can
+ * be no more than the processors the benchmark runs on
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RouteExecutorBenchmarks {
+	private static final int PAIRS = 1000;
+
+	@Param({ "10000", "100000" })
+	public int size;
+
+	@Param({ "DIJKSTRA", "BIDIRECTIONAL_A_STAR" })
+	public RoutingMode mode;
+
+	private RouteExecutor executor;
+	private List<Node<Location>[]> pairs;
+
+	/*
+	 * The pair one thread routes next. Threads start spread evenly over the pairs, so they
+	 * do not all search the same route at once
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		/**
+		 * Picks the thread's first pair
+		 * @param thread: The thread's index among the benchmark's threads
+		 */
+		@Setup(Level.Trial)
+		public void start(ThreadParams thread) {
+			next = (int) ((long) thread.getThreadIndex() * PAIRS / thread.getThreadCount());
+		}
+
+		// returns the index of the pair to route, moving on to the next
+		private int advance() {
+			int i = next;
+			next = (next + 1) % PAIRS;
+			return i;
+		}
+	}
+
+	/**
+	 * Generates the grid, picks the pairs to route between and starts the executor
+	 */
+	@Setup(Level.Trial)
+	public void start() {
+		MapGraph graph = GeneratedMaps.generate("grid", size);
+		pairs = RoutingBenchmark.randomPairs(graph, PAIRS, GeneratedMaps.SEED);
+		executor = new RouteExecutor(graph.publish(), mode, 1);
+	}
+
+	/**
+	 * Stops the executor's worker
+	 */
+	@TearDown(Level.Trial)
+	public void stop() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Routes the thread's next pair on one thread
+	 * @param cursor: The thread's position among the pairs
+	 * @return the route found
+	 */
+	@Benchmark
+	@Threads(1)
+	public List<Edge<Location>> routeOn1(Cursor cursor) {
+		return route(cursor);
+	}
+
+	/**
+	 * Routes each thread's next pair on two threads at once
+	 * @param cursor: The thread's position among the pairs
+	 * @return the route found
+	 */
+	@Benchmark
+	@Threads(2)
+	public List<Edge<Location>> routeOn2(Cursor cursor) {
+		return route(cursor);
+	}
+
+	/**
+	 * Routes each thread's next pair on four threads at once
+	 * @param cursor: The thread's position among the pairs
+	 * @return the route found
+	 */
+	@Benchmark
+	@Threads(4)
+	public List<Edge<Location>> routeOn4(Cursor cursor) {
+		return route(cursor);
+	}
+
+	/**
+	 * Routes each thread's next pair on eight threads at once
+	 * @param cursor: The thread's position among the pairs
+	 * @return the route found
+	 */
+	@Benchmark
+	@Threads(8)
+	public List<Edge<Location>> routeOn8(Cursor cursor) {
+		return route(cursor);
+	}
+
+	/**
+	 * Routes each thread's next pair on one thread per processor at once
+	 * @param cursor: The thread's position among the pairs
+	 * @return the route found
+	 */
+	@Benchmark
+	@Threads(Threads.MAX)
+	public List<Edge<Location>> routeOnEveryProcessor(Cursor cursor) {
+		return route(cursor);
+	}
+
+	/**
+	 * Runs every benchmark in this class and prints how throughput scales with threads
+	 * @param args: JMH command line options, such as -p size=10000
+	 * @throws CommandLineOptionException Indicates args are not valid JMH options
+	 * @throws RunnerException Indicates a benchmark failed
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(new CommandLineOptions(args));
+		options.include(RouteExecutorBenchmarks.class.getName());
+		report(new Runner(options.build()).run());
+	}
+
+	// routes the pair at cursor through the shared executor
+	private List<Edge<Location>> route(Cursor cursor) {
+		Node<Location>[] p = pairs.get(cursor.advance());
+		return executor.route(p[0], p[1]);
+	}
+
+	// prints each result's throughput, with its speedup over routeOn1's result for the same
+	// map and search and the share of that speedup each thread adds
+	private static void report(Collection<RunResult> results) {
+		List<RunResult> sorted = new ArrayList<RunResult>(results);
+		Collections.sort(sorted, new Comparator<RunResult>() {
+			public int compare(RunResult a, RunResult b) {
+				int c = key(a).compareTo(key(b));
+				return c != 0 ? c : Integer.compare(a.getParams().getThreads(),
+						b.getParams().getThreads());
+			}
+		});
+		Map<String, Double> single = new HashMap<String, Double>();
+		for (RunResult r: sorted) {
+			if (r.getParams().getBenchmark().endsWith(".routeOn1"))
+				single.put(key(r), r.getPrimaryResult().getScore());
+		}
+
+		System.out.println();
+		System.out.printf("%-30s %-22s %8s %10s %8s %11s%n", "map and search", "benchmark",
+				"threads", "routes/ms", "speedup", "efficiency");
+		for (RunResult r: sorted) {
+			int threads = r.getParams().getThreads();
+			double score = r.getPrimaryResult().getScore();
+			Double base = single.get(key(r));
+			double speedup = base != null ? score / base : Double.NaN;
+			String name = r.getParams().getBenchmark();
+			System.out.printf("%-30s %-22s %8d %10.2f %7.2fx %10.0f%%%n", key(r),
+					name.substring(name.lastIndexOf('.') + 1), threads, score, speedup,
+					100 * speedup / threads);
+		}
+	}
+
+	// returns the map and search a result measured
+	private static String key(RunResult result) {
+		BenchmarkParams params = result.getParams();
+		return "grid " + params.getParam("size") + " " + params.getParam("mode");
+	}
+}
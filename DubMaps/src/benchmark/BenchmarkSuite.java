@@ -0,0 +1,184 @@
+package benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import controller.Display;
+import controller.LabelCache;
+import controller.MapManager;
+import controller.UIManager;
+import model.CompiledMap;
+import model.Edge;
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.MapGraph.RoutingMode;
+import model.Node;
+import model.RoutingService;
+
+/*
+ * BenchmarkSuite measures the operations the map programs spend their time in: parsing each
+ * bundled map, routing between a fixed random set of buildings, directly and by name through
+ * RoutingService, nearest node hit-testing at random points, scaling routes and drawing labels
+ * for painting. Routing and hit-testing are repeated on generated grid and random geometric
+ * graphs of growing size to show how each scales. The optional argument is the largest
+ * generated graph, default 100000 nodes; graphs of a million nodes need -Xmx4g or so.
+ * Painting needs a display and is skipped when headless. Run from the project directory so
+ * the data files resolve. The JMH benchmarks in jmh measure the same operations under JMH,
+ * with forks and warmup it controls; build them with mvn -Pjmh package
+ */
+public class BenchmarkSuite {
+	private static final int[] GENERATED_SIZES = { 10000, 100000, 1000000 };
+	private static final int PAIRS = 100, POINTS = 10000;
+	private static final int NAVIGATOR_RADIUS = 100, MAP_MAKER_RADIUS = 8;
+	private static final String MAP_IMAGE = "src/data/UWBothell.jpg";
+	private static final long SEED = 3;
+
+	public static void main(String[] args) throws IOException {
+		int largest = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+		Harness.section("parsing");
+		for (final String map: RoutingBenchmark.MAPS) {
+			Harness.measure("FileParser (text)", map, 1, new Harness.Operation() {
+				public Object run(int index) {
+					return new FileParser(map, false).getGraph();
+				}
+			});
+			final File file = File.createTempFile(map, ".map");
+			file.deleteOnExit();
+			CompiledMap.write(new FileParser(map, false).getGraph(), file.getPath());
+			Harness.measure("CompiledMap.read", map, 1, new Harness.Operation() {
+				public Object run(int index) {
+					try {
+						return CompiledMap.read(file.getPath());
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+		}
+
+		Harness.section("bundled maps");
+		for (String map: RoutingBenchmark.MAPS)
+			measureGraph(map, new FileParser(map).getGraph());
+
+		Harness.section("generated maps");
+		for (final int size: GENERATED_SIZES) {
+			if (size > largest)
+				break;
+			MapGraph grid = (MapGraph) Harness.once("GraphGenerator.grid", size + " nodes",
+					new Harness.Operation() {
+				public Object run(int index) {
+					return GraphGenerator.grid(size, 20, SEED);
+				}
+			});
+			measureGraph("grid " + size, grid);
+			MapGraph geometric = (MapGraph) Harness.once("GraphGenerator.randomGeometric",
+					size + " nodes", new Harness.Operation() {
+				public Object run(int index) {
+					return GraphGenerator.randomGeometric(size, 20 * Math.sqrt(size), 6, SEED);
+				}
+			});
+			measureGraph("geometric " + size, geometric);
+		}
+
+		Harness.section("painting");
+		if (GraphicsEnvironment.isHeadless())
+			System.out.println("skipped: no display available");
+		else
+			measurePainting(GraphGenerator.grid(GENERATED_SIZES[0], 20, SEED));
+	}
+
+	// times routing and hit-testing on graph
+	private static void measureGraph(String name, final MapGraph graph) {
+		// fewer routes on larger graphs, where each search settles more nodes
+		int size = graph.getAllNodes().size();
+		final List<Node<Location>[]> pairs = RoutingBenchmark.randomPairs(graph,
+				Math.max(5, Math.min(PAIRS, PAIRS * 10000 / size)), SEED);
+		graph.getCompactGraph();  // built once per graph version, outside the timed loops
+		for (final RoutingMode mode: new RoutingMode[] { RoutingMode.DIJKSTRA,
+				RoutingMode.BIDIRECTIONAL_A_STAR }) {
+			Harness.measure("MapGraph.getPath " + mode, name, pairs.size(),
+					new Harness.Operation() {
+				public Object run(int index) {
+					Node<Location>[] p = pairs.get(index);
+					return graph.getPath(p[0], p[1], mode);
+				}
+			});
+		}
+
+		// the same routes by building name, from whichever entrances are closest
+		final RoutingService service = new RoutingService(graph);
+		Harness.measure("RoutingService.getRoute", name, pairs.size(), new Harness.Operation() {
+			public Object run(int index) {
+				Node<Location>[] p = pairs.get(index);
+				return service.getRoute(p[0].getLocation().getName(),
+						p[1].getLocation().getName());
+			}
+		});
+
+		// query random points within the map's bounds
+		double width = 0, height = 0;
+		for (Location l: graph.getAllLocations()) {
+			width = Math.max(width, l.getX());
+			height = Math.max(height, l.getY());
+		}
+		Random random = new Random(SEED);
+		final int[] xs = new int[POINTS], ys = new int[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			xs[i] = (int) (random.nextDouble() * width);
+			ys[i] = (int) (random.nextDouble() * height);
+		}
+		Harness.measure("MapGraph.getClosestNode", name, POINTS, new Harness.Operation() {
+			public Object run(int index) {
+				return graph.getClosestNode(xs[index], ys[index], MAP_MAKER_RADIUS);
+			}
+		});
+		Harness.measure("MapGraph.getClosestBuilding", name, POINTS, new Harness.Operation() {
+			public Object run(int index) {
+				return graph.getClosestBuilding(xs[index], ys[index], NAVIGATOR_RADIUS);
+			}
+		});
+	}
+
+	// times scaling routes and drawing building labels, both of growing size
+	private static void measurePainting(MapGraph graph) {
+		Display.setMapImage(MAP_IMAGE);
+		MapManager map = new MapManager(Display.getWidth(), Display.getHeight());
+		final UIManager ui = new UIManager(map);
+		final LabelCache labelCache = new LabelCache(ui, 2);
+		BufferedImage canvas = new BufferedImage(Display.getWidth(), Display.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g = canvas.createGraphics();
+
+		List<Edge<Location>> route = graph.getPath(graph.getAllNodes().get(0),
+				graph.getAllNodes().get(graph.getAllNodes().size() - 1));
+		for (int length = 10; route != null && length <= route.size(); length *= 10) {
+			final List<Edge<Location>> part = route.subList(0, length);
+			Harness.measure("UIManager.getPath", length + " edges", 1, new Harness.Operation() {
+				public Object run(int index) {
+					return ui.getPath(part);
+				}
+			});
+		}
+
+		List<Location> locations = graph.getAllLocations();
+		for (int count = 10; count <= locations.size(); count *= 10) {
+			final List<Location> labels = new ArrayList<Location>(locations.subList(0, count));
+			Harness.measure("LabelCache.draw", count + " labels", 1,
+					new Harness.Operation() {
+				public Object run(int index) {
+					labelCache.draw(g, labels);
+					return labels;
+				}
+			});
+		}
+		g.dispose();
+	}
+}
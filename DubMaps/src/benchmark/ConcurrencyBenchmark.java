@@ -0,0 +1,80 @@
+package benchmark;
+
+import java.util.List;
+
+import model.Edge;
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.MapGraph.RoutingMode;
+import model.Node;
+import model.RouteExecutor;
+
+/*
+ * ConcurrencyBenchmark measures route throughput as RouteExecutor's worker count grows, on the
+ * largest bundled map and a generated grid. Every batch of routes is submitted at once and
+ * timed until the last one is found; the time per route and the speedup over one worker are
+ * printed for 1, 2, 4 ... up to twice the available processors. Every route is checked
+ * against MapGraph.getPath, and the program exits with status 1 if any differs. The optional
+ * argument is the grid's size, default 100000 nodes. Run from the project directory so the
+ * data files resolve. jmh/benchmark/jmh/RouteExecutorBenchmarks measures the same scaling
+ * with many threads calling RouteExecutor.route directly
+ */
+public class ConcurrencyBenchmark {
+	private static final int QUERIES = 2000;
+	private static final long SEED = 3;
+
+	public static void main(String[] args) throws InterruptedException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int failures = measure("updatedCampus", new FileParser("updatedCampus").getGraph());
+		failures += measure("grid " + size, GraphGenerator.grid(size, 20, SEED));
+		System.out.printf("%d mismatched routes%n", failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	// times batches of routes on graph with growing worker counts, returning the number of
+	// routes that differ from MapGraph.getPath
+	private static int measure(String name, MapGraph graph) throws InterruptedException {
+		Harness.section(name + ", " + Runtime.getRuntime().availableProcessors() + " processors");
+		final List<Node<Location>[]> pairs = RoutingBenchmark.randomPairs(graph,
+				Math.min(QUERIES, QUERIES * 10000 / graph.getAllNodes().size() + 100), SEED);
+		double single = 0;
+		int failures = 0;
+		for (int threads = 1; threads <= 2 * Runtime.getRuntime().availableProcessors();
+				threads *= 2) {
+			final RouteExecutor executor = new RouteExecutor(graph.getSnapshot(),
+					RoutingMode.BIDIRECTIONAL_A_STAR, threads);
+			double time = Harness.measure("RouteExecutor " + threads + " threads", name, 1,
+					new Harness.Operation() {
+				public Object run(int index) {
+					try {
+						return executor.routeAll(pairs);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}) / pairs.size();
+			if (threads == 1)
+				single = time;
+			System.out.printf("%-37s %-20s %14.1f ns/route, %.2fx one thread%n", "", "", time,
+					single / time);
+			failures += mismatches(graph, pairs, executor.routeAll(pairs));
+			executor.shutdown();
+		}
+		return failures;
+	}
+
+	// returns the number of routes whose length differs from MapGraph.getPath's
+	private static int mismatches(MapGraph graph, List<Node<Location>[]> pairs,
+			List<List<Edge<Location>>> routes) {
+		int result = 0;
+		for (int i = 0; i < pairs.size(); i++) {
+			Node<Location>[] p = pairs.get(i);
+			double expected = RoutingBenchmark.length(graph.getPath(p[0], p[1]));
+			if (Math.abs(expected - RoutingBenchmark.length(routes.get(i))) > 1e-6)
+				result++;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import model.Edge;
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.MapGraph.RoutingMode;
+import model.Node;
+
+/*
+ * EquivalenceCheck routes random pairs of nodes on every bundled map with each routing mode
+ * and compares them with the original search in LegacyRouting. A route matches if both
+ * searches agree on whether a path exists, its length, and that its edges are connected from
+ * start to dest. Exits with status 1 if any route differs. Run from the project directory so
+ * the data files resolve
+ */
+public class EquivalenceCheck {
+	private static final int PAIRS = 2000;
+	private static final double TOLERANCE = 1e-6;
+
+	public static void main(String[] args) {
+		long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+		Random random = new Random(seed);
+		int failures = 0;
+
+		for (String map: RoutingBenchmark.MAPS) {
+			MapGraph graph = new FileParser(map).getGraph();
+			List<Node<Location>> nodes = graph.getAllNodes();
+			for (int i = 0; i < PAIRS; i++) {
+				Node<Location> start = nodes.get(random.nextInt(nodes.size()));
+				Node<Location> dest = nodes.get(random.nextInt(nodes.size()));
+				double expected = RoutingBenchmark.length(LegacyRouting.getPath(start, dest));
+
+				for (RoutingMode mode: RoutingMode.values()) {
+					List<Edge<Location>> route = graph.getPath(start, dest, mode);
+					double length = RoutingBenchmark.length(route);
+					if (Math.abs(length - expected) > TOLERANCE || !connects(route, start, dest)) {
+						failures++;
+						System.out.printf("%s %s: %s -> %s expected %f, found %f%n", map, mode,
+								start, dest, expected, length);
+					}
+				}
+			}
+		}
+		System.out.printf("seed %d: %d mismatched routes%n", seed, failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	// returns true if route is null or a chain of edges leading from start to dest
+	private static boolean connects(List<Edge<Location>> route, Node<Location> start,
+			Node<Location> dest) {
+		if (route == null)
+			return true;
+		Node<Location> at = start;
+		for (Edge<Location> e: route) {
+			if (!e.getParent().equals(at))
+				return false;
+			at = e.getChild();
+		}
+		return at.equals(dest);
+	}
+}
@@ -0,0 +1,134 @@
+package benchmark;
+
+import java.util.Random;
+
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * GraphGenerator builds synthetic maps for measuring how loading, routing and hit-testing scale
+ * with map size. Every edge is added in both directions with its straight-line length, as
+ * MapMaker does, and a random fraction of nodes are named buildings so there are destinations
+ * to route between. Graphs of a million nodes need a heap of a few gigabytes
+ */
+public class GraphGenerator {
+	// the fraction of generated nodes that are buildings
+	private static final double BUILDINGS = 0.01;
+
+	// private constructor, only static methods are used
+	private GraphGenerator() {}
+
+	/**
+	 * Returns a street grid of about count nodes spaced spacing pixels apart, each moved up to
+	 * a quarter of spacing from its lattice point and joined to its right and lower neighbours
+	 * @param count: The approximate number of nodes
+	 * @param spacing: The distance between neighbouring lattice points, in pixels
+	 * @param seed: The random seed
+	 * @return the generated graph
+	 */
+	@SuppressWarnings("unchecked")
+	public static MapGraph grid(int count, double spacing, long seed) {
+		int side = (int) Math.ceil(Math.sqrt(count));
+		Random random = new Random(seed);
+		MapGraph graph = new MapGraph();
+		Node<Location>[] nodes = (Node<Location>[]) new Node<?>[side * side];
+		for (int row = 0; row < side; row++) {
+			for (int col = 0; col < side; col++) {
+				double x = spacing * (col + 1 + (random.nextDouble() - 0.5) / 2);
+				double y = spacing * (row + 1 + (random.nextDouble() - 0.5) / 2);
+				nodes[row * side + col] = node(graph, row * side + col, x, y, random);
+			}
+		}
+		for (int row = 0; row < side; row++) {
+			for (int col = 0; col < side; col++) {
+				if (col + 1 < side)
+					connect(graph, nodes[row * side + col], nodes[row * side + col + 1]);
+				if (row + 1 < side)
+					connect(graph, nodes[row * side + col], nodes[(row + 1) * side + col]);
+			}
+		}
+		graph.publish();
+		return graph;
+	}
+
+	/**
+	 * Returns count nodes scattered uniformly over a square, each joined to every node within
+	 * the radius that gives an average of degree neighbours per node
+	 * @param count: The number of nodes
+	 * @param size: The width and height of the square, in pixels
+	 * @param degree: The average number of neighbours per node
+	 * @param seed: The random seed
+	 * @return the generated graph
+	 */
+	@SuppressWarnings("unchecked")
+	public static MapGraph randomGeometric(int count, double size, double degree, long seed) {
+		double radius = Math.sqrt(degree * size * size / (Math.PI * count));
+		Random random = new Random(seed);
+		MapGraph graph = new MapGraph();
+		Node<Location>[] nodes = (Node<Location>[]) new Node<?>[count];
+		double[] xs = new double[count], ys = new double[count];
+		for (int i = 0; i < count; i++) {
+			xs[i] = 1 + random.nextDouble() * size;
+			ys[i] = 1 + random.nextDouble() * size;
+			nodes[i] = node(graph, i, xs[i], ys[i], random);
+		}
+
+		// bucket nodes into cells one radius wide so neighbours are in adjacent cells
+		int cells = Math.max(1, (int) Math.ceil((size + 1) / radius));
+		int[] start = new int[cells * cells + 1];
+		int[] cellOf = new int[count];
+		for (int i = 0; i < count; i++) {
+			cellOf[i] = cell(ys[i], radius, cells) * cells + cell(xs[i], radius, cells);
+			start[cellOf[i] + 1]++;
+		}
+		for (int c = 0; c < cells * cells; c++)
+			start[c + 1] += start[c];
+		int[] members = new int[count], next = new int[cells * cells];
+		System.arraycopy(start, 0, next, 0, cells * cells);
+		for (int i = 0; i < count; i++)
+			members[next[cellOf[i]]++] = i;
+
+		// join each pair within radius once, from the node with the smaller index
+		for (int i = 0; i < count; i++) {
+			int cx = cellOf[i] % cells, cy = cellOf[i] / cells;
+			for (int y = Math.max(0, cy - 1); y <= Math.min(cells - 1, cy + 1); y++) {
+				for (int x = Math.max(0, cx - 1); x <= Math.min(cells - 1, cx + 1); x++) {
+					for (int k = start[y * cells + x]; k < start[y * cells + x + 1]; k++) {
+						int j = members[k];
+						double dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+						if (j > i && dx * dx + dy * dy <= radius * radius)
+							connect(graph, nodes[i], nodes[j]);
+					}
+				}
+			}
+		}
+		graph.publish();
+		return graph;
+	}
+
+	// adds a node at x, y to graph, making it a building with probability BUILDINGS
+	private static Node<Location> node(MapGraph graph, int id, double x, double y,
+			Random random) {
+		Node<Location> result;
+		if (random.nextDouble() < BUILDINGS)
+			result = new Node<Location>(new Location("B" + id, "Building " + id, x, y));
+		else
+			result = new Node<Location>(x, y);
+		graph.add(result);
+		return result;
+	}
+
+	// joins a and b with edges in both directions of their straight-line length
+	private static void connect(MapGraph graph, Node<Location> a, Node<Location> b) {
+		double length = Math.sqrt(Math.pow(a.getLocation().getX() - b.getLocation().getX(), 2)
+				+ Math.pow(a.getLocation().getY() - b.getLocation().getY(), 2));
+		graph.addEdge(a, b, length);
+		graph.addEdge(b, a, length);
+	}
+
+	// returns the index of the row or column of cells containing coordinate
+	private static int cell(double coordinate, double width, int cells) {
+		return Math.min(cells - 1, (int) (coordinate / width));
+	}
+}
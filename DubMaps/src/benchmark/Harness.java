@@ -0,0 +1,81 @@
+package benchmark;
+
+/*
+ * Harness times repeated operations the way BenchmarkSuite reports them: a few untimed warmup
+ * iterations so the JIT compiles the code under test, then several timed iterations whose
+ * average, fastest and slowest time per operation are printed. Every result is stored in a
+ * volatile field so the JIT cannot discard the work that produced it
+ */
+public class Harness {
+	private static final int WARMUP_ITERATIONS = 3, MEASURED_ITERATIONS = 5;
+	private static volatile Object sink;  // last result of every operation
+
+	/*
+	 * One operation to be timed. The index counts operations within an iteration, so an
+	 * operation can pick its input from a fixed array
+	 */
+	public interface Operation {
+		Object run(int index);
+	}
+
+	// private constructor, only static methods are used
+	private Harness() {}
+
+	/**
+	 * Prints a section heading
+	 * @param title: The section's name
+	 */
+	public static void section(String title) {
+		System.out.println();
+		System.out.println("# " + title);
+	}
+
+	/**
+	 * Times operation and prints the nanoseconds taken per call
+	 * @param name: The name of the operation
+	 * @param input: The input being measured, such as a map name or size
+	 * @param count: The number of calls per iteration
+	 * @param operation: The operation to time
+	 * @return the average nanoseconds per call over the timed iterations
+	 */
+	public static double measure(String name, String input, int count, Operation operation) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+			iterate(count, operation);
+
+		double total = 0, min = Double.MAX_VALUE, max = 0;
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			double time = iterate(count, operation) / count;
+			total += time;
+			min = Math.min(min, time);
+			max = Math.max(max, time);
+		}
+		double average = total / MEASURED_ITERATIONS;
+		System.out.printf("%-37s %-20s %14.1f ns/op   (min %.1f, max %.1f)%n", name, input,
+				average, min, max);
+		return average;
+	}
+
+	/**
+	 * Runs operation once and prints the milliseconds taken, for setup steps too slow to
+	 * repeat
+	 * @param name: The name of the operation
+	 * @param input: The input being measured, such as a map name or size
+	 * @param operation: The operation to time
+	 * @return the operation's result
+	 */
+	public static Object once(String name, String input, Operation operation) {
+		long start = System.nanoTime();
+		Object result = operation.run(0);
+		System.out.printf("%-37s %-20s %14.1f ms (single run)%n", name, input,
+				(System.nanoTime() - start) / 1e6);
+		return result;
+	}
+
+	// returns the nanoseconds taken to call operation count times
+	private static double iterate(int count, Operation operation) {
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			sink = operation.run(i);
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,106 @@
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * HitTestBenchmark times MapGraph.getClosestNode and getClosestBuilding at random points
+ * against a linear scan of every node, on each bundled map and on a generated map of
+ * scattered nodes, and checks both find nodes at the same distance. Run from the project
+ * directory so the data files resolve
+ */
+public class HitTestBenchmark {
+	private static final int QUERIES = 20000, GENERATED_NODES = 100000;
+	private static final int NAVIGATOR_RADIUS = 100, MAP_MAKER_RADIUS = 8;
+	private static final long SEED = 11;
+
+	public static void main(String[] args) {
+		for (String map: RoutingBenchmark.MAPS)
+			run(map, new FileParser(map).getGraph());
+		run("generated", scatter(GENERATED_NODES, 20000, SEED));
+	}
+
+	// times and checks nearest node queries on graph
+	private static void run(String name, MapGraph graph) {
+		List<Node<Location>> nodes = graph.getAllNodes();
+		double width = 0, height = 0;
+		for (Node<Location> n: nodes) {
+			width = Math.max(width, n.getLocation().getX());
+			height = Math.max(height, n.getLocation().getY());
+		}
+		Random random = new Random(SEED);
+		int[] xs = new int[QUERIES], ys = new int[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			xs[i] = (int) (random.nextDouble() * width);
+			ys[i] = (int) (random.nextDouble() * height);
+		}
+
+		int mismatches = 0;
+		for (int i = 0; i < QUERIES / 20; i++) {
+			Node<Location> expected = scan(nodes, xs[i], ys[i], MAP_MAKER_RADIUS);
+			Node<Location> found = graph.getClosestNode(xs[i], ys[i], MAP_MAKER_RADIUS);
+			if ((expected == null) != (found == null) || (expected != null &&
+				distance(expected, xs[i], ys[i]) != distance(found, xs[i], ys[i])))
+				mismatches++;
+		}
+
+		// time the indexed queries against the scan, best of several rounds
+		double indexed = Double.MAX_VALUE, linear = Double.MAX_VALUE;
+		for (int round = 0; round < 6; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < QUERIES; i++) {
+				graph.getClosestNode(xs[i], ys[i], MAP_MAKER_RADIUS);
+				graph.getClosestBuilding(xs[i], ys[i], NAVIGATOR_RADIUS);
+			}
+			indexed = Math.min(indexed, (System.nanoTime() - start) / (2.0 * QUERIES));
+			start = System.nanoTime();
+			for (int i = 0; i < QUERIES / 20; i++)
+				scan(nodes, xs[i], ys[i], MAP_MAKER_RADIUS);
+			linear = Math.min(linear, (System.nanoTime() - start) / (QUERIES / 20.0));
+		}
+		System.out.printf("%-14s %7d nodes   scan %10.1f ns/query   index %8.1f ns/query   "
+				+ "mismatches %d%n", name, nodes.size(), linear, indexed, mismatches);
+	}
+
+	/**
+	 * Returns a graph of count unconnected nodes scattered uniformly over a square
+	 * @param count: The number of nodes
+	 * @param size: The width and height of the square, in pixels
+	 * @param seed: The random seed
+	 * @return the generated graph
+	 */
+	public static MapGraph scatter(int count, double size, long seed) {
+		MapGraph graph = new MapGraph();
+		Random random = new Random(seed);
+		for (int i = 0; i < count; i++)
+			graph.add(new Node<Location>(1 + random.nextDouble() * size,
+					1 + random.nextDouble() * size));
+		return graph;
+	}
+
+	// returns the closest node to x,y within maxDistance by checking every node
+	private static Node<Location> scan(List<Node<Location>> nodes, int x, int y,
+			int maxDistance) {
+		Node<Location> closest = null;
+		double best = maxDistance;
+		for (Node<Location> n: nodes) {
+			double d = distance(n, x, y);
+			if (d < best) {
+				closest = n;
+				best = d;
+			}
+		}
+		return closest;
+	}
+
+	// returns the distance from node to x,y
+	private static double distance(Node<Location> node, int x, int y) {
+		return Math.sqrt(Math.pow(x - node.getLocation().getX(), 2.0) +
+				Math.pow(y - node.getLocation().getY(), 2.0));
+	}
+}
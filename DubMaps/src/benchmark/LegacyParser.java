@@ -0,0 +1,100 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * LegacyParser keeps the original FileParser paths reader, which splits every line with a
+ * regular expression and parses each number from its own String, as a baseline for parsing
+ * benchmarks
+ */
+public final class LegacyParser {
+
+	// private constructor mimics static class behavior
+	private LegacyParser() {}
+
+	/**
+	 * Stores all path data in filename
+	 * @param filename The file of path information to be parsed
+	 * @param graph The graph the nodes and edges are added to
+	 * @requires filename is formatted correctly
+	 */
+	public static void parsePaths(String filename, MapGraph graph) {
+	    BufferedReader reader = null;
+	    try {
+	        reader = new BufferedReader(new FileReader(filename));
+	        
+	        // Construct a map of campus path information and nodes
+	        String inputLine;
+	        Node<Location> parent = null;
+	        Node<Location> child = null;
+	        String[] tokens;        	
+        	double x;
+        	double y;
+        	
+	        while ((inputLine = reader.readLine()) != null) {	        	
+	        	// no tab indicates the node is a new parent node
+	            if (!inputLine.startsWith("\t")) {
+	            	
+	            	// split tokens and save them in x,y coordinates
+	            	tokens = inputLine.split(",");
+	            	x = Double.parseDouble(tokens[0]);
+	            	y = Double.parseDouble(tokens[1]);
+	            	
+	            	// check if the parent node has already been found in the buildings file
+	            	parent = graph.getNode(x, y);
+	            	if (parent == null) { 
+	            		// node is a not in the buildings file; represent as a path	            		
+	            		parent = new Node<Location>(x, y);
+
+	            		// add new node to the graph
+	            		graph.add(parent);
+	            	}
+	            } else { //add edges to parent node
+	            	// parse data
+	            	inputLine = inputLine.trim();
+	            	tokens = inputLine.split("[, ]"); //split x, y, and distance
+	            	tokens[1] = tokens[1].substring(0, tokens[1].length() - 1); //remove colon
+	            	
+	            	// save x y coordinates and length
+	            	x = Double.parseDouble(tokens[0]);
+	            	y = Double.parseDouble(tokens[1]);
+	            	double label = Double.parseDouble(tokens[2]);
+	            	
+	            	// check if child node has already been found in the buildings file
+	            	child = graph.getNode(x, y);
+	            	if (child == null) {
+	            		// node is a not in the buildings file; represent as a path	            		
+	            		child = new Node<Location>(x, y); 
+	            		
+	            		// add new node to the graph
+	            		graph.add(child);
+	            	}
+	            	// add new edges
+	            	graph.addEdge(parent, child, label);
+            		graph.addEdge(child, parent, label);
+	            }
+	        }	        
+	    } catch (FileNotFoundException e) {
+        	return; 
+        } catch (IOException e) {
+	        System.err.println(e.toString());
+	        e.printStackTrace(System.err);
+	    } finally {
+	        if (reader != null) {
+	            try {
+	                reader.close();
+	            } catch (IOException e) {
+	                System.err.println(e.toString());
+	                e.printStackTrace(System.err);
+	            }
+	        }
+	    }    
+	}
+}
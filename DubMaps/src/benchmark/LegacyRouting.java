@@ -0,0 +1,67 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+
+import model.DijkPath;
+import model.Edge;
+import model.Location;
+import model.Node;
+
+/*
+ * LegacyRouting keeps the original MapGraph shortest path search, which copies the whole
+ * path into a new DijkPath on every relaxed edge, as a baseline for routing benchmarks
+ */
+public final class LegacyRouting {
+
+	// private constructor mimics static class behavior
+	private LegacyRouting() {}
+
+	/**
+	 * returns the shortest path from start to dest, null if no path exists
+	 * @param start The start node
+	 * @param dest The destination node
+	 * @return a list of edges leading from start to dest, null if none
+	 * @throws IllegalArgumentException Indicates null parameter
+	 */
+	public static List<Edge<Location>> getPath(Node<Location> start, Node<Location> dest) {
+		if (start == null || dest == null) {
+			throw new IllegalArgumentException("Null input");
+		}
+		Set<Node<Location>> finished = new HashSet<Node<Location>>();
+		Queue<DijkPath> active = new PriorityQueue<DijkPath>();
+		active.add(new DijkPath(start));
+		
+		// find paths branching off the end node until the queue is empty
+		while (!active.isEmpty()) {
+			DijkPath current = active.remove();
+			Node<Location> node = current.getDest();
+
+			if (finished.contains(node)) { continue; }  //skip already found node
+			if (node.equals(dest)) {
+				return current.getPath();  // found destination node! return path 
+			}
+			
+			// destination not found, avoid re-finding current 
+			finished.add(node);
+			
+			// continue paths to node's children if they have not been found
+			for (Edge<Location> e: node.getEdges()) {
+				if (finished.contains(e.getChild())) { continue; }  // skip found nodes
+				
+				// build next DijkPath and add it to the queue
+				double newCost = current.getCost() + e.getLength();
+				List<Edge<Location>> newPath = new ArrayList<Edge<Location>>();
+				newPath.addAll(current.getPath());
+				newPath.add(e);
+				DijkPath next = new DijkPath(newCost, e.getChild(), newPath);
+				active.add(next);
+			}
+		}
+		return null;
+	}
+}
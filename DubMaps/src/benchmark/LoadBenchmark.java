@@ -0,0 +1,118 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import model.CompiledMap;
+import model.Edge;
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * LoadBenchmark times FileParser reading the text files of each bundled map against loading
+ * the same map compiled by CompiledMap, and the construction of generated graphs of
+ * increasing size, which should grow linearly with the node count. It also checks that
+ * MapGraph.getNode finds every node by its coordinates and name, that the compiled map holds
+ * the same graph, and that a damaged compiled map is rejected. Run from the project
+ * directory so the data files resolve
+ */
+public class LoadBenchmark {
+	private static final int ROUNDS = 10;
+	private static final int[] GENERATED_SIZES = { 25000, 50000, 100000, 200000 };
+	private static final long SEED = 5;
+
+	public static void main(String[] args) throws IOException {
+		for (String map: RoutingBenchmark.MAPS) {
+			MapGraph graph = null;
+			double text = Double.MAX_VALUE;
+			for (int i = 0; i < ROUNDS; i++) {
+				long start = System.nanoTime();
+				graph = new FileParser(map, false).getGraph();
+				text = Math.min(text, (System.nanoTime() - start) / 1e6);
+			}
+
+			// compile the map to a scratch file and time loading it back
+			File file = File.createTempFile(map, ".map");
+			file.deleteOnExit();
+			CompiledMap.write(graph, file.getPath());
+			MapGraph compiled = null;
+			double binary = Double.MAX_VALUE;
+			for (int i = 0; i < ROUNDS; i++) {
+				long start = System.nanoTime();
+				compiled = CompiledMap.read(file.getPath());
+				binary = Math.min(binary, (System.nanoTime() - start) / 1e6);
+			}
+
+			System.out.printf("%-14s %7d nodes %8d edges   text %8.2f ms   compiled %8.2f ms   "
+					+ "missed lookups %d   differs %b   corruption detected %b%n", map,
+					graph.getAllNodes().size(), graph.getAllPaths().size(), text, binary,
+					missedLookups(graph), !summary(graph).equals(summary(compiled)),
+					detectsCorruption(file));
+		}
+
+		for (int size: GENERATED_SIZES) {
+			double best = Double.MAX_VALUE;
+			for (int i = 0; i < 3; i++) {
+				long start = System.nanoTime();
+				HitTestBenchmark.scatter(size, 20000, SEED);
+				best = Math.min(best, (System.nanoTime() - start) / 1e6);
+			}
+			System.out.printf("%-14s %7d nodes   build %8.2f ms   %6.0f ns/node%n", "generated",
+					size, best, best * 1e6 / size);
+		}
+	}
+
+	// returns the sorted coordinates, names, edges and labels of graph, ignoring the
+	// generated names of path nodes
+	static List<String> summary(MapGraph graph) {
+		List<String> result = new ArrayList<String>();
+		for (Node<Location> n: graph.getAllNodes()) {
+			Location l = n.getLocation();
+			String name = l.getLongName().startsWith("Path") ? "" : l.getName() + l.getLongName();
+			result.add(l.getX() + "," + l.getY() + " " + name);
+			for (Edge<Location> e: n.getEdges())
+				result.add(l.getX() + "," + l.getY() + " -> " + e.getChild().getLocation().getX()
+						+ "," + e.getChild().getLocation().getY() + ": " + e.getLength());
+		}
+		for (Location l: graph.getLabels())
+			result.add(l.toString());
+		Collections.sort(result);
+		return result;
+	}
+
+	// returns whether reading file fails after one byte in its body is changed
+	private static boolean detectsCorruption(File file) throws IOException {
+		File copy = File.createTempFile("corrupt", ".map");
+		copy.deleteOnExit();
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		bytes[bytes.length / 2] ^= 1;
+		Files.write(copy.toPath(), bytes);
+		try {
+			CompiledMap.read(copy.getPath());
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	// returns the number of nodes that getNode cannot find by coordinates or name
+	private static int missedLookups(MapGraph graph) {
+		int missed = 0;
+		List<Node<Location>> nodes = graph.getAllNodes();
+		for (Node<Location> n: nodes) {
+			Node<Location> found = graph.getNode(n.getLocation().getX(), n.getLocation().getY());
+			if (found == null || (int) found.getLocation().getX() != (int) n.getLocation().getX()
+					|| (int) found.getLocation().getY() != (int) n.getLocation().getY())
+				missed++;
+			else if (graph.getNode(n.getLocation().getName()) == null)
+				missed++;
+		}
+		return missed;
+	}
+}
@@ -0,0 +1,108 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import model.DistanceMatrix;
+import model.Edge;
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * MatrixBenchmark times the distance between every pair of buildings on each bundled map,
+ * computed with one getPath call per pair and as a DistanceMatrix on one thread and on every
+ * core. It also checks that the matrix agrees with getPath, that its kept routes have the
+ * same lengths, and that it survives being written and read back. Exits with status 1 if
+ * anything differs. Run from the project directory so the data files resolve
+ */
+public class MatrixBenchmark {
+	private static final double TOLERANCE = 1e-6;
+
+	public static void main(String[] args) throws IOException {
+		int failures = 0;
+		for (String map: RoutingBenchmark.MAPS) {
+			final MapGraph graph = new FileParser(map).getGraph();
+			final List<Location> buildings = graph.getBuildings();
+			final int size = buildings.size();
+			graph.getCompactGraph();  // built once, outside the timed loops
+			String input = map + " " + size + "x" + size;
+
+			Harness.section(map);
+			final double[] pairwise = new double[size * size];
+			Harness.measure("getPath per pair", input, 1, new Harness.Operation() {
+				public Object run(int index) {
+					for (int i = 0; i < size; i++) {
+						Node<Location> from = node(graph, buildings.get(i));
+						for (int j = 0; j < size; j++)
+							pairwise[i * size + j] = length(
+									graph.getPath(from, node(graph, buildings.get(j))));
+					}
+					return pairwise;
+				}
+			});
+			final ForkJoinPool single = new ForkJoinPool(1);
+			Harness.measure("DistanceMatrix 1 thread", input, 1, new Harness.Operation() {
+				public Object run(int index) {
+					return new DistanceMatrix(graph, false, single);
+				}
+			});
+			single.shutdown();
+			Harness.measure("DistanceMatrix " + ForkJoinPool.commonPool().getParallelism()
+					+ " threads", input, 1, new Harness.Operation() {
+				public Object run(int index) {
+					return new DistanceMatrix(graph, false);
+				}
+			});
+			Harness.measure("DistanceMatrix with paths", input, 1, new Harness.Operation() {
+				public Object run(int index) {
+					return new DistanceMatrix(graph, true);
+				}
+			});
+
+			DistanceMatrix matrix = new DistanceMatrix(graph, true);
+			double[] computed = matrix.toArray();
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < size; j++) {
+					double expected = pairwise[i * size + j], found = computed[i * size + j];
+					double rebuilt = length(matrix.getPath(i, j));
+					if (!close(expected, found) || !close(expected, rebuilt)) {
+						failures++;
+						System.out.printf("%s: %d -> %d expected %f, found %f, rebuilt %f%n",
+								map, i, j, expected, found, rebuilt);
+					}
+				}
+			}
+			File file = File.createTempFile(map, ".matrix");
+			file.deleteOnExit();
+			matrix.write(file.getPath());
+			if (!Arrays.equals(computed, DistanceMatrix.read(file.getPath()).toArray())) {
+				failures++;
+				System.out.println(map + ": matrix read back differs");
+			}
+			System.out.printf("%s: %d bytes written%n", map, file.length());
+		}
+		System.out.printf("%d mismatches%n", failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	// returns the node at building's location
+	private static Node<Location> node(MapGraph graph, Location building) {
+		return graph.getNode(building.getX(), building.getY());
+	}
+
+	// returns the length of path, infinite if there is no path as in a DistanceMatrix
+	private static double length(List<Edge<Location>> path) {
+		return path == null ? Double.POSITIVE_INFINITY : RoutingBenchmark.length(path);
+	}
+
+	// returns whether a and b are equal lengths, both infinite if there is no route
+	private static boolean close(double a, double b) {
+		return a == b || Math.abs(a - b) <= TOLERANCE;
+	}
+}
@@ -0,0 +1,118 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.concurrent.ForkJoinPool;
+
+import model.Edge;
+import model.Location;
+import model.MapGraph;
+import model.Node;
+import model.PathsParser;
+
+/*
+ * ParseBenchmark times reading _paths.dat files with the original line by line parser kept in
+ * LegacyParser against PathsParser on one thread and on every core, printing the best time
+ * and lines per second of each. PathsParser's parsing and its building of the graph are timed
+ * separately, since building the graph is the same work for both. It reads each bundled
+ * map's paths file and a generated grid written in the same format, whose coordinates are
+ * rounded to four places as MapMaker's are. Every graph read by PathsParser is checked
+ * against LegacyParser's, and the program exits with status 1 if any differs. The optional
+ * argument is the grid's size, default 200000 nodes. Run from the project directory so the
+ * data files resolve
+ */
+public class ParseBenchmark {
+	private static final int ROUNDS = 5;
+	private static final long SEED = 11;
+
+	public static void main(String[] args) throws IOException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int failures = 0;
+		for (String map: RoutingBenchmark.MAPS)
+			failures += measure(map, "src/data/" + map + "_paths.dat");
+
+		File file = File.createTempFile("grid", "_paths.dat");
+		file.deleteOnExit();
+		write(GraphGenerator.grid(size, 20, SEED), file);
+		failures += measure("grid " + size + ", " + file.length() / (1 << 20) + "MB",
+				file.getPath());
+		System.out.printf("%d mismatched graphs%n", failures);
+		if (failures > 0)
+			System.exit(1);
+	}
+
+	// times each parser reading file, returning 1 if PathsParser's graph differs from
+	// LegacyParser's and 0 otherwise
+	private static int measure(String name, String file) throws IOException {
+		Harness.section(name);
+		MapGraph legacy = null, parsed = null;
+		int lines = 0;
+		double legacyTime = Double.MAX_VALUE, singleTime = Double.MAX_VALUE;
+		double parallelTime = Double.MAX_VALUE, mergeTime = Double.MAX_VALUE;
+		ForkJoinPool one = new ForkJoinPool(1);
+		for (int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			legacy = new MapGraph();
+			LegacyParser.parsePaths(file, legacy);
+			legacyTime = Math.min(legacyTime, (System.nanoTime() - start) / 1e6);
+
+			start = System.nanoTime();
+			lines = new PathsParser(file, one).getLineCount();
+			singleTime = Math.min(singleTime, (System.nanoTime() - start) / 1e6);
+
+			start = System.nanoTime();
+			PathsParser parser = new PathsParser(file);
+			parallelTime = Math.min(parallelTime, (System.nanoTime() - start) / 1e6);
+			start = System.nanoTime();
+			parsed = new MapGraph();
+			parser.addTo(parsed);
+			mergeTime = Math.min(mergeTime, (System.nanoTime() - start) / 1e6);
+		}
+		one.shutdown();
+		print("LegacyParser, parse and build", lines, legacyTime);
+		print("PathsParser 1 thread, parse", lines, singleTime);
+		print("PathsParser " + ForkJoinPool.commonPool().getParallelism() + " threads, parse",
+				lines, parallelTime);
+		print("PathsParser addTo, build", lines, mergeTime);
+
+		if (LoadBenchmark.summary(legacy).equals(LoadBenchmark.summary(parsed)))
+			return 0;
+		System.out.println(name + ": PathsParser built a different graph");
+		return 1;
+	}
+
+	// prints the time taken to parse lines lines
+	private static void print(String parser, int lines, double millis) {
+		System.out.printf("%-37s %10d lines %10.2f ms %14.0f lines/s%n", parser, lines, millis,
+				lines / (millis / 1000));
+	}
+
+	// writes graph to file in the _paths.dat format, with coordinates rounded to four places
+	private static void write(MapGraph graph, File file) throws IOException {
+		BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try {
+			StringBuilder line = new StringBuilder();
+			for (Node<Location> n: graph.getAllNodes()) {
+				line.setLength(0);
+				coordinates(line, n.getLocation()).append('\n');
+				for (Edge<Location> e: n.getEdges()) {
+					coordinates(line.append('\t'), e.getChild().getLocation()).append(": ")
+							.append(e.getLength()).append('\n');
+				}
+				out.append(line);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	// appends location's rounded coordinates to line as "x,y"
+	private static StringBuilder coordinates(StringBuilder line, Location location) {
+		return line.append(Math.round(location.getX() * 1e4) / 1e4).append(',')
+				.append(Math.round(location.getY() * 1e4) / 1e4);
+	}
+}
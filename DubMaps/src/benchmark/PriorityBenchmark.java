@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import model.DijkPath;
+import model.Edge;
+import model.FileParser;
+import model.IndexedHeap;
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * PriorityBenchmark measures the cost of ordering search entries: the original truncating
+ * DijkPath comparison, the corrected one, and the primitive keyed IndexedHeap. It then checks
+ * that routes on the bundled maps are equal in length across searches and identical between
+ * repeated queries. Run from the project directory so the data files resolve
+ */
+public class PriorityBenchmark {
+	private static final int ENTRIES = 200000, ROUNDS = 5, PAIRS = 200;
+	private static final double COORDINATE_SPACE = 1e6;
+	private static final long SEED = 7;
+
+	public static void main(String[] args) {
+		Random random = new Random(SEED);
+		double[] costs = new double[ENTRIES];
+		for (int i = 0; i < ENTRIES; i++)
+			costs[i] = random.nextDouble() * COORDINATE_SPACE;
+
+		System.out.printf("close pairs mis-ordered by the truncating comparison: %d of %d%n",
+				truncationErrors(random), ENTRIES);
+
+		// time a full fill and drain of each queue
+		double boxed = Double.MAX_VALUE, primitive = Double.MAX_VALUE;
+		for (int i = 0; i < 2 * ROUNDS; i++) {
+			double b = drainDijkPaths(costs), p = drainHeap(costs);
+			if (i >= ROUNDS) {
+				boxed = Math.min(boxed, b);
+				primitive = Math.min(primitive, p);
+			}
+		}
+		System.out.printf("PriorityQueue<DijkPath> %6.1f ns/entry   IndexedHeap %6.1f ns/entry%n",
+				boxed / ENTRIES, primitive / ENTRIES);
+
+		// compare routes on every bundled map
+		for (String map: RoutingBenchmark.MAPS) {
+			MapGraph graph = new FileParser(map).getGraph();
+			int unequal = 0, unstable = 0;
+			for (Node<Location>[] p: RoutingBenchmark.randomPairs(graph, PAIRS, SEED)) {
+				List<Edge<Location>> route = graph.getPath(p[0], p[1]);
+				double legacy = RoutingBenchmark.length(LegacyRouting.getPath(p[0], p[1]));
+				if (Math.abs(legacy - RoutingBenchmark.length(route)) > 1e-6)
+					unequal++;
+				if (!route.equals(graph.getPath(p[0], p[1])))
+					unstable++;
+			}
+			System.out.printf("%-14s routes with unequal length %d   non-repeatable routes %d%n",
+					map, unequal, unstable);
+		}
+	}
+
+	// returns the number of distinct costs, less than 1e-4 apart, that the original DijkPath
+	// comparison does not order the same way as the corrected one
+	private static int truncationErrors(Random random) {
+		int result = 0;
+		for (int i = 0; i < ENTRIES; i++) {
+			double a = random.nextDouble() * COORDINATE_SPACE;
+			double b = a + (random.nextDouble() - 0.5) * 1e-4;
+			int truncated = (int) (100000 * (a - b));
+			if (Integer.signum(truncated) != Integer.signum(Double.compare(a, b)))
+				result++;
+		}
+		return result;
+	}
+
+	// returns the nanoseconds taken to queue and remove every cost as a DijkPath
+	private static double drainDijkPaths(double[] costs) {
+		long start = System.nanoTime();
+		PriorityQueue<DijkPath> queue = new PriorityQueue<DijkPath>();
+		for (double c: costs)
+			queue.add(new DijkPath(c, null, null));
+		while (!queue.isEmpty())
+			queue.remove();
+		return System.nanoTime() - start;
+	}
+
+	// returns the nanoseconds taken to queue and remove every cost by id in an IndexedHeap
+	private static double drainHeap(double[] costs) {
+		long start = System.nanoTime();
+		IndexedHeap heap = new IndexedHeap(costs.length);
+		for (int i = 0; i < costs.length; i++)
+			heap.offer(i, costs[i]);
+		while (!heap.isEmpty())
+			heap.poll();
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,115 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.Edge;
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * RoutingBenchmark times MapGraph.getPath against the original path-copying search on a fixed
+ * random set of building pairs from each bundled map, and checks both find routes of equal
+ * length. Run from the project directory so the data files resolve
+ */
+public class RoutingBenchmark {
+	// the prefixes of the bundled map data files
+	public static final String[] MAPS = { "campus", "updatedCampus", "bothell" };
+	private static final int PAIRS = 200, ROUNDS = 5;
+	private static final long SEED = 42;
+	private static final double TOLERANCE = 1e-6;
+
+	public static void main(String[] args) {
+		for (String map: MAPS) {
+			MapGraph graph = new FileParser(map).getGraph();
+			List<Node<Location>[]> pairs = randomPairs(graph, PAIRS, SEED);
+			graph.getCompactGraph();  // build the compact copy outside the timed loop
+
+			// warm up both searches, then time them over the same pairs
+			for (int i = 0; i < ROUNDS; i++) {
+				runLegacy(pairs);
+				runCurrent(graph, pairs);
+			}
+			double legacy = Double.MAX_VALUE, current = Double.MAX_VALUE;
+			for (int i = 0; i < ROUNDS; i++) {
+				legacy = Math.min(legacy, runLegacy(pairs));
+				current = Math.min(current, runCurrent(graph, pairs));
+			}
+
+			System.out.printf("%-14s legacy %9.1f us/route   current %9.1f us/route   "
+					+ "speedup %5.1fx   mismatches %d%n", map, legacy / pairs.size(),
+					current / pairs.size(), legacy / current, mismatches(graph, pairs));
+		}
+	}
+
+	/**
+	 * Returns count random pairs of distinct buildings from graph, the same for every seed
+	 * @param graph: The graph to choose buildings from
+	 * @param count: The number of pairs
+	 * @param seed: The random seed
+	 * @return a list of { start, dest } node pairs
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<Node<Location>[]> randomPairs(MapGraph graph, int count, long seed) {
+		List<Node<Location>[]> result = new ArrayList<Node<Location>[]>();
+		List<Node<Location>> buildings = new ArrayList<Node<Location>>();
+		for (Location l: graph.getBuildings())
+			buildings.add(graph.getNode(l.getX(), l.getY()));
+		if (buildings.size() < 2)
+			return result;
+
+		Random random = new Random(seed);
+		while (result.size() < count) {
+			Node<Location> a = buildings.get(random.nextInt(buildings.size()));
+			Node<Location> b = buildings.get(random.nextInt(buildings.size()));
+			if (!a.equals(b))
+				result.add((Node<Location>[]) new Node<?>[] { a, b });
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the sum of the edge lengths in path, or -1 if path is null
+	 * @param path: A list of edges
+	 * @return the length of path
+	 */
+	public static double length(List<Edge<Location>> path) {
+		if (path == null)
+			return -1;
+		double result = 0;
+		for (Edge<Location> e: path)
+			result += e.getLength();
+		return result;
+	}
+
+	// returns the number of pairs whose routes differ in length between both searches
+	private static int mismatches(MapGraph graph, List<Node<Location>[]> pairs) {
+		int result = 0;
+		for (Node<Location>[] p: pairs) {
+			double a = length(LegacyRouting.getPath(p[0], p[1]));
+			double b = length(graph.getPath(p[0], p[1]));
+			if (Math.abs(a - b) > TOLERANCE)
+				result++;
+		}
+		return result;
+	}
+
+	// returns the microseconds taken to route every pair with the legacy search
+	private static double runLegacy(List<Node<Location>[]> pairs) {
+		long start = System.nanoTime();
+		for (Node<Location>[] p: pairs)
+			LegacyRouting.getPath(p[0], p[1]);
+		return (System.nanoTime() - start) / 1000.0;
+	}
+
+	// returns the microseconds taken to route every pair with MapGraph.getPath
+	private static double runCurrent(MapGraph graph, List<Node<Location>[]> pairs) {
+		long start = System.nanoTime();
+		for (Node<Location>[] p: pairs)
+			graph.getPath(p[0], p[1]);
+		return (System.nanoTime() - start) / 1000.0;
+	}
+}
@@ -0,0 +1,58 @@
+package benchmark;
+
+import java.util.List;
+
+import model.FileParser;
+import model.Location;
+import model.MapGraph;
+import model.MapGraph.RoutingMode;
+import model.Node;
+import model.PathFinder;
+
+/*
+ * SearchSpaceBenchmark routes a fixed random set of building pairs on each bundled map with
+ * every routing mode, reporting the average number of settled nodes, the time per route and
+ * the number of routes whose length differs from plain Dijkstra. Run from the project
+ * directory so the data files resolve
+ */
+public class SearchSpaceBenchmark {
+	private static final int PAIRS = 500, ROUNDS = 5;
+	private static final long SEED = 42;
+
+	public static void main(String[] args) {
+		for (String map: RoutingBenchmark.MAPS) {
+			MapGraph graph = new FileParser(map).getGraph();
+			List<Node<Location>[]> pairs = RoutingBenchmark.randomPairs(graph, PAIRS, SEED);
+			System.out.printf("%s (%d nodes)%n", map, graph.getCompactGraph().size());
+
+			for (RoutingMode mode: RoutingMode.values()) {
+				long settled = 0;
+				int mismatches = 0;
+				for (Node<Location>[] p: pairs) {
+					double length = RoutingBenchmark.length(graph.getPath(p[0], p[1], mode));
+					settled += PathFinder.get().getSettledCount();
+					double expected = RoutingBenchmark.length(
+							graph.getPath(p[0], p[1], RoutingMode.DIJKSTRA));
+					if (Math.abs(length - expected) > 1e-6)
+						mismatches++;
+				}
+				System.out.printf("  %-21s settled %8.1f nodes/route   %8.1f us/route   "
+						+ "mismatches %d%n", mode, (double) settled / pairs.size(),
+						time(graph, pairs, mode) / pairs.size(), mismatches);
+			}
+		}
+	}
+
+	// returns the fewest microseconds taken to route every pair with mode over several rounds
+	private static double time(MapGraph graph, List<Node<Location>[]> pairs, RoutingMode mode) {
+		double best = Double.MAX_VALUE;
+		for (int i = 0; i < 2 * ROUNDS; i++) {
+			long start = System.nanoTime();
+			for (Node<Location>[] p: pairs)
+				graph.getPath(p[0], p[1], mode);
+			if (i >= ROUNDS)
+				best = Math.min(best, (System.nanoTime() - start) / 1000.0);
+		}
+		return best;
+	}
+}
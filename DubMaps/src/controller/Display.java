@@ -12,10 +12,8 @@ public final class Display {
 
 	// scale ratios in the form of image pixels to screen pixels 
 	private static final double MIN_IM_PX_RATIO = 1.0, MAX_IM_PX_RATIO = 4.0;
-	private static GraphicsDevice screen = 
-			GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
-	private static int screenWidth = screen.getDisplayMode().getWidth();
-	private static int screenHeight = screen.getDisplayMode().getHeight();
+	// found when the screen size is first asked for, so headless programs can use this class
+	private static GraphicsDevice screen;
 	private static String mapImage;
 	private static String mapFile;
 	
@@ -75,8 +73,7 @@ public final class Display {
 	 * @return screen width as an integer
 	 */
 	public static int getWidth() {	
-		screenWidth = screen.getDisplayMode().getWidth();
-		return (int) screenWidth;
+		return getScreen().getDisplayMode().getWidth();
 	}
 	
 	/**
@@ -84,7 +81,13 @@ public final class Display {
 	 * @return screen height as an integer
 	 */
 	public static int getHeight() {
-		screenHeight = screen.getDisplayMode().getHeight();
-		return (int) screenHeight;
+		return getScreen().getDisplayMode().getHeight();
+	}
+	
+	// returns the default screen, finding it on first use
+	private static synchronized GraphicsDevice getScreen() {
+		if (screen == null)
+			screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+		return screen;
 	}
 }
@@ -0,0 +1,181 @@
+package controller;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.CompactGraph;
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * EdgeLayer keeps every path in a map as retained geometry so MapMaker can draw thousands of
+ * edges without scaling or allocating per edge. Each undirected edge is stored once, as a line
+ * in native map pixels, in the Path2D of the square bucket containing its midpoint. Drawing
+ * scales the graphics context to the current zoom and draws whole buckets that overlap the
+ * painted area. The layer follows the graph's published snapshot: edits made through MapMaker
+ * are appended as they are published, and any other change rebuilds the layer on the next draw
+ */
+public class EdgeLayer {
+	private static final double BUCKET_SIZE = 256;  // bucket width, in map pixels
+	private final MapGraph model;
+	private final UIManager ui;
+	private final Map<Long, Bucket> buckets;
+	private final List<Bucket> bucketList;  // the same buckets, for iterating without garbage
+	private int version;  // the published snapshot version the layer matches
+	private int size;
+	private BasicStroke stroke;  // the last stroke drawn with, reused while the zoom is steady
+	private float strokeWidth;
+
+	/**
+	 * Constructs a layer holding every edge currently in model
+	 * @param model: The graph whose edges are drawn
+	 * @param ui: The UIManager giving the current scale
+	 */
+	public EdgeLayer(MapGraph model, UIManager ui) {
+		this.model = model;
+		this.ui = ui;
+		buckets = new HashMap<Long, Bucket>();
+		bucketList = new ArrayList<Bucket>();
+		stroke = null;
+		rebuild();
+	}
+
+	/**
+	 * Adds a line between parent and child after an edge between them has been added to the
+	 * graph in either or both directions and published
+	 * @param parent: One end of the new edge
+	 * @param child: The other end of the new edge
+	 * @requires no other edges have been added to the graph since the layer was last updated
+	 * @modifies this
+	 */
+	public void addEdge(Node<Location> parent, Node<Location> child) {
+		add(parent.getLocation().getX(), parent.getLocation().getY(),
+			child.getLocation().getX(), child.getLocation().getY());
+		version = model.getSnapshot().getVersion();
+	}
+
+	/**
+	 * Records changes made to the graph that add no lines, such as new nodes, so the layer
+	 * is not rebuilt on the next draw
+	 * @requires no edges have been added to the graph since the layer was last updated
+	 * @modifies this
+	 */
+	public void update() {
+		version = model.getSnapshot().getVersion();
+	}
+
+	/**
+	 * Returns the number of lines in the layer, one per undirected edge
+	 * @return the line count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Draws the lines in every bucket overlapping clip at the current zoom
+	 * @param g: The graphics context to draw to, in display pixels
+	 * @param clip: The area being painted, in display pixels
+	 * @param width: The line width, in display pixels
+	 * @return the number of lines drawn
+	 */
+	public int draw(Graphics2D g, Rectangle clip, float width) {
+		if (version != model.getSnapshot().getVersion())
+			rebuild();
+		double sx = ui.scaleWidth(), sy = ui.scaleHeight();
+		double[] area = ui.getNativeArea(clip, (int) Math.ceil(width));
+
+		// strokes are drawn in map pixels once the context is scaled
+		if (stroke == null || strokeWidth != (float) (width * sx)) {
+			strokeWidth = (float) (width * sx);
+			stroke = new BasicStroke(strokeWidth, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+		}
+		AffineTransform transform = g.getTransform();
+		Stroke previous = g.getStroke();
+		g.scale(1 / sx, 1 / sy);
+		g.setStroke(stroke);
+
+		int drawn = 0;
+		for (int i = 0; i < bucketList.size(); i++) {
+			Bucket b = bucketList.get(i);
+			if (b.maxX >= area[0] && b.minX <= area[2] && b.maxY >= area[1] && b.minY <= area[3]) {
+				g.draw(b.path);
+				drawn += b.count;
+			}
+		}
+		g.setTransform(transform);
+		g.setStroke(previous);
+		return drawn;
+	}
+
+	// replaces the layer's contents with every undirected edge in the graph
+	private void rebuild() {
+		buckets.clear();
+		bucketList.clear();
+		size = 0;
+		CompactGraph graph = model.getSnapshot().getGraph();
+		for (int i = 0; i < graph.size(); i++) {
+			for (int e = graph.firstEdge(i); e < graph.endEdge(i); e++) {
+				int j = graph.getTarget(e);
+				// keep one direction of each two way edge, and every one way edge
+				if (i < j || (i > j && !hasEdge(graph, j, i)))
+					add(graph.getX(i), graph.getY(i), graph.getX(j), graph.getY(j));
+			}
+		}
+		version = graph.getVersion();
+	}
+
+	// adds a line from x1, y1 to x2, y2 to the bucket containing its midpoint
+	private void add(double x1, double y1, double x2, double y2) {
+		long key = key((int) Math.floor((x1 + x2) / 2 / BUCKET_SIZE),
+				(int) Math.floor((y1 + y2) / 2 / BUCKET_SIZE));
+		Bucket b = buckets.get(key);
+		if (b == null) {
+			b = new Bucket();
+			buckets.put(key, b);
+			bucketList.add(b);
+		}
+		b.path.moveTo(x1, y1);
+		b.path.lineTo(x2, y2);
+		b.minX = Math.min(b.minX, Math.min(x1, x2));
+		b.minY = Math.min(b.minY, Math.min(y1, y2));
+		b.maxX = Math.max(b.maxX, Math.max(x1, x2));
+		b.maxY = Math.max(b.maxY, Math.max(y1, y2));
+		b.count++;
+		size++;
+	}
+
+	// returns whether graph has an edge from parent to child
+	private static boolean hasEdge(CompactGraph graph, int parent, int child) {
+		for (int e = graph.firstEdge(parent); e < graph.endEdge(parent); e++) {
+			if (graph.getTarget(e) == child)
+				return true;
+		}
+		return false;
+	}
+
+	// packs a bucket's column and row into one key
+	private static long key(int bx, int by) {
+		return ((long) bx << 32) | (by & 0xffffffffL);
+	}
+
+	/*
+	 * Bucket holds the lines whose midpoints fall in one square of the map, and the bounding
+	 * box of all of them
+	 */
+	private static class Bucket {
+		private final Path2D.Double path = new Path2D.Double();
+		private double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		private double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		private int count = 0;
+	}
+}
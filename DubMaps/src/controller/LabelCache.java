@@ -0,0 +1,159 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Location;
+
+/*
+ * LabelCache draws building labels, white text outlined in black, from small images rendered
+ * once per label name, color and font size, so drawing a label is a single copy. Labels may
+ * also be drawn in another color, to highlight them. The images are kept
+ * until the font size chosen by UIManager changes. Each image is placed the same way
+ * UIManager centers text on a label's location
+ */
+public class LabelCache {
+	private final UIManager ui;
+	private final int outline;  // outline width, in display pixels
+	private final Map<Color, Map<String, Glyph>> glyphs;  // glyphs by text color and text
+	private int fontSize;  // the size glyphs were rendered at
+	private Font font;
+	private FontRenderContext context;
+
+	/**
+	 * Constructs an empty LabelCache
+	 * @param ui: The UIManager giving the current scale and font size
+	 * @param outline: The width of the black outline around each label
+	 */
+	public LabelCache(UIManager ui, int outline) {
+		this.ui = ui;
+		this.outline = outline;
+		glyphs = new HashMap<Color, Map<String, Glyph>>();
+		fontSize = -1;
+	}
+
+	/**
+	 * Draws each label centered on its location at the current zoom
+	 * @param g: The graphics context to draw to
+	 * @param labels: The labels to draw
+	 */
+	public void draw(Graphics2D g, List<Location> labels) {
+		checkFont();
+		double sx = ui.scaleWidth(), sy = ui.scaleHeight();
+		for (Location l: labels) {
+			Glyph glyph = getGlyph(l.getName(), Color.white);
+			g.drawImage(glyph.image, (int) (l.getX() / sx) + glyph.dx,
+					(int) (l.getY() / sy) + glyph.dy, null);
+		}
+	}
+
+	/**
+	 * Draws a label centered on its location at the current zoom, with its text in color
+	 * @param g: The graphics context to draw to
+	 * @param label: The label to draw
+	 * @param color: The color of the label's text
+	 */
+	public void draw(Graphics2D g, Location label, Color color) {
+		checkFont();
+		Glyph glyph = getGlyph(label.getName(), color);
+		g.drawImage(glyph.image, (int) (label.getX() / ui.scaleWidth()) + glyph.dx,
+				(int) (label.getY() / ui.scaleHeight()) + glyph.dy, null);
+	}
+
+	/**
+	 * Returns the display area label covers when drawn at the current zoom
+	 * @param label: The label
+	 * @return the bounds of the label's outlined text, in display pixels
+	 */
+	public Rectangle getArea(Location label) {
+		checkFont();
+		Glyph glyph = getGlyph(label.getName(), Color.white);
+		return new Rectangle((int) (label.getX() / ui.scaleWidth()) + glyph.dx,
+				(int) (label.getY() / ui.scaleHeight()) + glyph.dy,
+				glyph.image.getWidth(), glyph.image.getHeight());
+	}
+
+	// discards every glyph if the font size has changed since they were rendered
+	private void checkFont() {
+		if (ui.getFontSize() != fontSize)
+			setFont(ui.getFont());
+	}
+
+	// discards every glyph and draws text in font from now on
+	private void setFont(Font font) {
+		glyphs.clear();
+		fontSize = font.getSize();
+		this.font = font;
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = scratch.createGraphics();
+		setHints(g);
+		context = g.getFontRenderContext();
+		g.dispose();
+	}
+
+	// returns the glyph showing text in color, rendering it if it is not cached
+	private Glyph getGlyph(String text, Color color) {
+		Map<String, Glyph> colored = glyphs.get(color);
+		if (colored == null) {
+			colored = new HashMap<String, Glyph>();
+			glyphs.put(color, colored);
+		}
+		Glyph glyph = colored.get(text);
+		if (glyph != null)
+			return glyph;
+
+		// leave room for the outline on every side, and a pixel for glyphs outside the bounds
+		Rectangle2D bounds = font.getStringBounds(text, context);
+		int margin = outline + 1;
+		double baseX = margin - bounds.getX(), baseY = margin - bounds.getY();
+		BufferedImage image = new BufferedImage((int) Math.ceil(bounds.getWidth()) + 2 * margin,
+				(int) Math.ceil(bounds.getHeight()) + 2 * margin, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		setHints(g);
+		g.setFont(font);
+		g.setColor(Color.black);
+		g.drawString(text, (float) (baseX - outline), (float) (baseY - outline));
+		g.drawString(text, (float) (baseX + outline), (float) (baseY + outline));
+		g.drawString(text, (float) (baseX + outline), (float) (baseY - outline));
+		g.drawString(text, (float) (baseX - outline), (float) (baseY + outline));
+		g.setColor(color);
+		g.drawString(text, (float) baseX, (float) baseY);
+		g.dispose();
+
+		// the text's baseline starts half its size left of and below the location
+		glyph = new Glyph(image, (int) Math.round(-bounds.getWidth() / 2 - baseX),
+				(int) Math.round(bounds.getHeight() / 2 - baseY));
+		colored.put(text, glyph);
+		return glyph;
+	}
+
+	// sets the rendering hints used to measure and draw label text. Text is drawn with
+	// greyscale antialiasing, since subpixel antialiasing needs an opaque background
+	private static void setHints(Graphics2D g) {
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+	}
+
+	/*
+	 * Glyph is a rendered label and the offset from its location to the image's corner
+	 */
+	private static class Glyph {
+		private final BufferedImage image;
+		private final int dx, dy;
+
+		private Glyph(BufferedImage image, int dx, int dy) {
+			this.image = image;
+			this.dx = dx;
+			this.dy = dy;
+		}
+	}
+}
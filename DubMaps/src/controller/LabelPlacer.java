@@ -0,0 +1,177 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import model.Location;
+import model.MapGraph;
+
+/*
+ * LabelPlacer chooses which labels and entrance markers to show at the current zoom so none
+ * overlap. Labels are placed greedily, buildings with the most entrances first and then in
+ * label order, skipping any label that would overlap one already placed. Entrance markers are
+ * placed the same way against other markers. The choice is made once per zoom and graph
+ * version, so painting only filters by it
+ */
+public class LabelPlacer {
+	private static final int CELL_SIZE = 64;  // collision grid cell width, in display pixels
+	private final UIManager ui;
+	private final LabelCache labels;
+	private final int markerRadius;
+	private MapGraph model;
+	private int version;  // the graph version the choice was made for
+	private double scaleWidth, scaleHeight;  // the zoom the choice was made for
+	private final Set<Location> shownLabels, shownEntrances;
+
+	/**
+	 * Constructs a LabelPlacer
+	 * @param ui: The UIManager giving the current scale
+	 * @param labels: The LabelCache the labels are drawn with, giving their sizes
+	 * @param markerRadius: The distance in display pixels a marker is drawn from its entrance
+	 */
+	public LabelPlacer(UIManager ui, LabelCache labels, int markerRadius) {
+		this.ui = ui;
+		this.labels = labels;
+		this.markerRadius = markerRadius;
+		model = null;
+		shownLabels = new HashSet<Location>();
+		shownEntrances = new HashSet<Location>();
+	}
+
+	/**
+	 * Returns the labels in candidates that are shown at the current zoom
+	 * @param model: The graph the labels belong to
+	 * @param candidates: Labels of model, such as those near the area being painted
+	 * @return the shown labels, in the order of candidates
+	 */
+	public List<Location> getShownLabels(MapGraph model, List<Location> candidates) {
+		check(model);
+		return filter(candidates, shownLabels);
+	}
+
+	/**
+	 * Returns the building entrances in candidates whose markers are shown at the current zoom
+	 * @param model: The graph the entrances belong to
+	 * @param candidates: Entrances of model, such as those near the area being painted
+	 * @return the shown entrances, in the order of candidates
+	 */
+	public List<Location> getShownEntrances(MapGraph model, List<Location> candidates) {
+		check(model);
+		return filter(candidates, shownEntrances);
+	}
+
+	// places the labels and markers again if the graph or zoom has changed since they were
+	private void check(MapGraph model) {
+		if (model == this.model && model.getVersion() == version &&
+			ui.scaleWidth() == scaleWidth && ui.scaleHeight() == scaleHeight)
+			return;
+		this.model = model;
+		version = model.getVersion();
+		scaleWidth = ui.scaleWidth();
+		scaleHeight = ui.scaleHeight();
+		place();
+	}
+
+	// chooses the labels and markers to show at the current zoom
+	private void place() {
+		// rank buildings by their number of entrances
+		final Map<String, Integer> entrances = new HashMap<String, Integer>();
+		List<Location> buildings = model.getBuildings();
+		for (Location b: buildings) {
+			Integer count = entrances.get(b.getName());
+			entrances.put(b.getName(), count == null ? 1 : count + 1);
+		}
+		Comparator<Location> priority = new Comparator<Location>() {
+			public int compare(Location a, Location b) {
+				return Integer.compare(count(b), count(a));
+			}
+			private int count(Location l) {
+				Integer count = entrances.get(l.getName());
+				return count == null ? 0 : count;
+			}
+		};
+
+		// the sort is stable, so equally ranked labels keep their order
+		List<Location> order = model.getLabels();
+		Collections.sort(order, priority);
+		shownLabels.clear();
+		Grid placed = new Grid();
+		for (Location l: order) {
+			Rectangle area = labels.getArea(l);
+			if (placed.add(area))
+				shownLabels.add(l);
+		}
+
+		Collections.sort(buildings, priority);
+		shownEntrances.clear();
+		placed = new Grid();
+		for (Location b: buildings) {
+			Rectangle area = new Rectangle((int) (b.getX() / scaleWidth) - markerRadius,
+					(int) (b.getY() / scaleHeight) - markerRadius,
+					2 * markerRadius + 1, 2 * markerRadius + 1);
+			if (placed.add(area))
+				shownEntrances.add(b);
+		}
+	}
+
+	// returns the locations in candidates that are in shown
+	private static List<Location> filter(List<Location> candidates, Set<Location> shown) {
+		List<Location> result = new ArrayList<Location>();
+		for (Location l: candidates) {
+			if (shown.contains(l))
+				result.add(l);
+		}
+		return result;
+	}
+
+	/*
+	 * Grid is a set of placed rectangles, each stored in every square cell of CELL_SIZE
+	 * display pixels it overlaps
+	 */
+	private static class Grid {
+		private final Map<Long, List<Rectangle>> cells = new HashMap<Long, List<Rectangle>>();
+
+		// adds area and returns true if it overlaps no rectangle already added, otherwise
+		// returns false
+		private boolean add(Rectangle area) {
+			int fromX = Math.floorDiv(area.x, CELL_SIZE);
+			int fromY = Math.floorDiv(area.y, CELL_SIZE);
+			int toX = Math.floorDiv(area.x + area.width - 1, CELL_SIZE);
+			int toY = Math.floorDiv(area.y + area.height - 1, CELL_SIZE);
+			for (int cx = fromX; cx <= toX; cx++) {
+				for (int cy = fromY; cy <= toY; cy++) {
+					List<Rectangle> list = cells.get(key(cx, cy));
+					if (list == null)
+						continue;
+					for (Rectangle r: list) {
+						if (r.intersects(area))
+							return false;
+					}
+				}
+			}
+			for (int cx = fromX; cx <= toX; cx++) {
+				for (int cy = fromY; cy <= toY; cy++) {
+					List<Rectangle> list = cells.get(key(cx, cy));
+					if (list == null) {
+						list = new ArrayList<Rectangle>(2);
+						cells.put(key(cx, cy), list);
+					}
+					list.add(area);
+				}
+			}
+			return true;
+		}
+
+		// packs a cell's column and row into one key
+		private static long key(int cx, int cy) {
+			return ((long) cx << 32) | (cy & 0xffffffffL);
+		}
+	}
+}
@@ -1,57 +1,161 @@
 package controller;
 
+import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 
 /*
  * MapManager is used to access an image of a map, and optimize the image to be displayed
- * on the current window 
+ * on the current window. Copies of the map already scaled to each recent display size are
+ * rendered in the background and kept within a memory budget, so painting at a steady zoom
+ * is an unscaled copy. Only the latest display size is rendered: a copy queued or being
+ * rendered for a size the display has since left is abandoned
  */
 public class MapManager {
 	
 	private final String mapFilepath = Display.getMapImage();
-	private BufferedImage map ;
+	private volatile BufferedImage map;  // the map, or its overview once tiles are open
+	private final boolean tiled;  // whether the map is too large to load as one image
+	private volatile TilePyramid tiles;  // tiles of a tiled map once open, otherwise null
+	private static final long TILED_PIXELS = 1L << 26;  // largest map loaded as one image
 	private final int[] imageArgs = new int[8]; // array of arguments for client's drawImage method call
+	// bytes of scaled copies kept at once: a quarter of the heap, at most 256MB
+	private static final long MEMORY_BUDGET =
+			Math.min(Runtime.getRuntime().maxMemory() / 4, 256L << 20);
+	private final Map<Long, BufferedImage> scaled =  // scaled copies by size, least recent first
+			new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true);
+	private final Set<Long> pending = new HashSet<Long>();  // sizes being rendered
+	private volatile long wanted = -1;  // the latest display size a scaled copy was asked for
+	private static final int STRIP_HEIGHT = 128;  // rows rendered between checks of wanted
+	private long scaledBytes = 0;
+	private volatile Component viewer;  // the component repainted when a scaled copy is ready
+	private final ExecutorService scaler = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "map scaler");
+			t.setDaemon(true);
+			return t;
+		}
+	});
 	
 	/**
-	 * Construct a new MapManager, optimized for the current display
+	 * Construct a new MapManager, optimized for the current display. A map too large to load
+	 * is tiled, or its tiles opened, in the background
 	 * @param width: The display's width
 	 * @param height: The display's height
 	 */
 	public MapManager(int width, int height) {
+		Dimension size = null;
+		boolean large = false;
 		try {
-			map = ImageIO.read(new File(mapFilepath));
-			map.setAccelerationPriority(1);
+			large = TilePyramid.isLarge(mapFilepath, TILED_PIXELS);
+			if (large) {
+				size = TilePyramid.getSize(mapFilepath);
+			} else {
+				map = ImageIO.read(new File(mapFilepath));
+				map.setAccelerationPriority(1);
+				size = new Dimension(map.getWidth(), map.getHeight());
+			}
 		} catch (IOException e) {
 			System.out.println("Invalid filepath");
 			System.exit(0);
 		}
+		tiled = large;
 		
 		// draw the entire image and place it in the top left of its destination
 		imageArgs[0] = 0; // start x coordinate of the destination
 		imageArgs[1] = 0; // start y coordinate of the destination	
 		imageArgs[4] = 0; // start x coordinate of the image
 		imageArgs[5] = 0; // start y coordinate of the image
-		imageArgs[6] = map.getWidth(); // end x coordinate of the image
-		imageArgs[7] = map.getHeight(); // end y coordinate of the image
+		// end x and y coordinates of the image, which is only partly loaded if tiled
+		imageArgs[6] = size.width;
+		imageArgs[7] = size.height;
 		
 		// manipulate ONLY the destination's dimensions 
 		imageArgs[2] = width; // end x coordinate of the destination
 		imageArgs[3] = scaleHeight(width); // end y coordinate of the destination	
+		if (tiled)
+			openTiles();
+		else
+			prepareScaledMap();
 	}
 	
 	/**
-	 * Returns an image of the map
+	 * Returns an image of the map. Maps drawn from tiles return a low resolution overview,
+	 * or null until their tiles are open, so use getNativeWidth and getNativeHeight for the
+	 * map's dimensions
 	 * @return map: a BufferedImage containing the map that is being managed
 	 */
 	public BufferedImage getMap() {
 		return map;
 	}
 	
+	/**
+	 * Returns the width of the map image at full resolution
+	 * @return the image's native width
+	 */
+	public int getNativeWidth() {
+		return imageArgs[6];
+	}
+	
+	/**
+	 * Returns the height of the map image at full resolution
+	 * @return the image's native height
+	 */
+	public int getNativeHeight() {
+		return imageArgs[7];
+	}
+	
+	/**
+	 * Draws the map at its current display size, copying a cached scaled image if one is
+	 * ready. Otherwise the full image is scaled while drawing and a scaled copy is rendered in
+	 * the background, after which viewer is repainted. A tiled map is drawn from its
+	 * overview, if there is one yet, until its tiles are open
+	 * @param g: The graphics context to draw to
+	 * @param viewer: The component being painted
+	 * @return false if the map was scaled while drawing because no scaled copy was ready, or
+	 * 		   not drawn at full detail because its tiles are not open yet
+	 */
+	public boolean drawMap(Graphics2D g, Component viewer) {
+		this.viewer = viewer;
+		TilePyramid pyramid = tiles;
+		if (pyramid != null) {
+			// load only the tiles in the area being painted
+			pyramid.draw(g, g.getClipBounds(), imageArgs[2], imageArgs[3]);
+			return true;
+		}
+		BufferedImage overview = map;
+		if (tiled) {
+			if (overview != null)
+				g.drawImage(overview, imageArgs[0], imageArgs[1], imageArgs[2], imageArgs[3],
+						null);
+			return false;
+		}
+		BufferedImage image = getScaledMap(imageArgs[2], imageArgs[3]);
+		if (image != null) {
+			g.drawImage(image, imageArgs[0], imageArgs[1], null);
+			return true;
+		}
+		g.drawImage(map, imageArgs[0], imageArgs[1], imageArgs[2], imageArgs[3],
+				imageArgs[4], imageArgs[5], imageArgs[6], imageArgs[7], null);
+		prepareScaledMap();
+		return false;
+	}
+	
 	/**
 	 * Returns Graphics.drawImage method arguments optimized for map
 	 * @return imageArgs: an array of arguments to be used sequentially for integer 
@@ -70,8 +174,8 @@ public class MapManager {
 	 */
 	public void zoomIn(int width, int height, Dimension focusArea) {
 		//calculate the ratio of image pixels to screen pixels
-		double hRat = ((1.0 * map.getHeight()) / (1.0 * focusArea.height));
-		double wRat = ((1.0 * map.getWidth()) / ( 1.0 * focusArea.width));
+		double hRat = ((1.0 * getNativeHeight()) / (1.0 * focusArea.height));
+		double wRat = ((1.0 * getNativeWidth()) / ( 1.0 * focusArea.width));
 		
 		// expand focusArea to scale limit
 		if (focusArea.width > focusArea.height) {
@@ -97,14 +201,16 @@ public class MapManager {
 			imageArgs[2] = scaleWidth(focusArea.height);
 			imageArgs[3] = focusArea.height;	
 		}
+		prepareScaledMap();
 	}
 	
 	/**
 	 * Zooms the image to its native resolution
 	 */
 	public void zoomIn() {
-		imageArgs[2] = map.getWidth();
-		imageArgs[3] = map.getHeight();
+		imageArgs[2] = getNativeWidth();
+		imageArgs[3] = getNativeHeight();
+		prepareScaledMap();
 	}
 	
 	/**
@@ -114,8 +220,8 @@ public class MapManager {
 	 */
 	public void zoomOut(int width, int height) {
 		//calculate the ratio of image pixels to screen pixels
-		double hRat = ((1.0 * map.getHeight()) / (1.0 * height));
-		double wRat = ((1.0 * map.getWidth()) / ( 1.0 * width));
+		double hRat = ((1.0 * getNativeHeight()) / (1.0 * height));
+		double wRat = ((1.0 * getNativeWidth()) / ( 1.0 * width));
 		
 		// zoom image, optimizing for the largest dimension
 		if (width >= height) {
@@ -141,6 +247,7 @@ public class MapManager {
 			imageArgs[2] = scaleWidth(height);
 			imageArgs[3] = height;		
 		}
+		prepareScaledMap();
 	}
 	
 	/**
@@ -159,6 +266,103 @@ public class MapManager {
 		return imageArgs[3];
 	}
 	
+	// returns the cached copy of the map scaled to width x height, or null if there is none
+	private synchronized BufferedImage getScaledMap(int width, int height) {
+		return scaled.get(sizeKey(width, height));
+	}
+	
+	// opens the map's tile pyramid in the background, tiling the map first if it has not
+	// been, then repaints the viewer with the tiles
+	private void openTiles() {
+		scaler.execute(new Runnable() {
+			public void run() {
+				try {
+					TilePyramid pyramid = new TilePyramid(mapFilepath);
+					map = pyramid.getOverview();
+					tiles = pyramid;
+				} catch (IOException e) {
+					System.out.println("map tiles could not be read: " + e);
+					return;
+				}
+				if (viewer != null)
+					viewer.repaint();
+			}
+		});
+	}
+	
+	// starts rendering a copy of the map scaled to the current display size in the
+	// background, unless one is cached, already being rendered, or too large to keep. Copies
+	// for any other size still queued or rendering are abandoned
+	private synchronized void prepareScaledMap() {
+		final int width = imageArgs[2], height = imageArgs[3];
+		final long key = sizeKey(width, height);
+		wanted = key;
+		if (tiled || width <= 0 || height <= 0 || 4L * width * height > MEMORY_BUDGET ||
+			scaled.containsKey(key) || !pending.add(key))
+			return;
+		
+		final GraphicsConfiguration config = viewer != null ? 
+				viewer.getGraphicsConfiguration() : null;
+		scaler.execute(new Runnable() {
+			public void run() {
+				BufferedImage image = renderScaledMap(config, width, height, key);
+				synchronized (MapManager.this) {
+					pending.remove(key);
+					if (image == null)
+						return;  // the display changed size before the copy was finished
+					scaled.put(key, image);
+					scaledBytes += 4L * width * height;
+					evict(key);
+				}
+				if (viewer != null)
+					viewer.repaint();
+			}
+		});
+	}
+	
+	// returns a copy of the map scaled to width x height, in a format matching config's
+	// display if given. The copy is drawn in strips, and null is returned as soon as key is
+	// no longer the wanted size
+	private BufferedImage renderScaledMap(GraphicsConfiguration config, int width, int height,
+			long key) {
+		if (key != wanted)
+			return null;
+		BufferedImage result = config != null ? config.createCompatibleImage(width, height) :
+				new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = result.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		try {
+			for (int y = 0; y < height; y += STRIP_HEIGHT) {
+				if (key != wanted)
+					return null;
+				g.setClip(0, y, width, Math.min(STRIP_HEIGHT, height - y));
+				g.drawImage(map, 0, 0, width, height, null);
+			}
+		} finally {
+			g.dispose();
+		}
+		return result;
+	}
+	
+	// removes the least recently drawn scaled copies other than keep until the cache
+	// fits the memory budget
+	private void evict(long keep) {
+		Iterator<Map.Entry<Long, BufferedImage>> it = scaled.entrySet().iterator();
+		while (scaledBytes > MEMORY_BUDGET && it.hasNext()) {
+			Map.Entry<Long, BufferedImage> entry = it.next();
+			if (entry.getKey() == keep)
+				continue;
+			scaledBytes -= 4L * entry.getValue().getWidth() * entry.getValue().getHeight();
+			it.remove();
+		}
+	}
+	
+	// packs a display size into one cache key
+	private static long sizeKey(int width, int height) {
+		return ((long) width << 32) | (height & 0xffffffffL);
+	}
+	
 	// returns a valid image display size, flag = true indicates preference for
 	// zooming out, in otherwise
 	private int getValidSize(int length, double curRat, boolean zoomOut) {
@@ -170,12 +374,12 @@ public class MapManager {
 	
 	// returns a width to match height at the image size ratio 
 	private int scaleWidth(int height) {
-		return (int) (((1.0 * map.getWidth()) / (1.0 * map.getHeight())) * height);
+		return (int) (((1.0 * getNativeWidth()) / (1.0 * getNativeHeight())) * height);
 	}
 	
 	// returns a height to match width at the image size ratio
 	private int scaleHeight(int width) {
-		return (int) (((1.0 * map.getHeight()) / (1.0 * map.getWidth())) * width);
+		return (int) (((1.0 * getNativeHeight()) / (1.0 * getNativeWidth())) * width);
 	}
 }
 
@@ -0,0 +1,87 @@
+package controller;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+/*
+ * PaintCounter tallies how many primitives a frame drew out of how many the map holds, to show
+ * the effect of drawing only what is visible. Counting is always on; the tally is drawn in
+ * the corner of the painted area when the program is run with -Ddubmaps.paintCounts=true
+ */
+public class PaintCounter {
+	private static final boolean SHOWN = Boolean.getBoolean("dubmaps.paintCounts");
+	private int drawn, total;
+	
+	/**
+	 * Constructs a counter with an empty tally
+	 */
+	public PaintCounter() {
+		reset();
+	}
+	
+	/**
+	 * Returns whether the tally is drawn, in which case painters should also count totals
+	 * @return true if -Ddubmaps.paintCounts=true was given
+	 */
+	public boolean isShown() {
+		return SHOWN;
+	}
+	
+	/**
+	 * Clears the tally at the start of a frame
+	 */
+	public void reset() {
+		drawn = 0;
+		total = 0;
+	}
+	
+	/**
+	 * Adds one kind of primitive to the tally
+	 * @param drawn: The number drawn this frame
+	 * @param total: The number in the map
+	 */
+	public void count(int drawn, int total) {
+		this.drawn += drawn;
+		this.total += total;
+	}
+	
+	/**
+	 * Returns the number of primitives drawn this frame
+	 * @return the drawn count
+	 */
+	public int getDrawn() {
+		return drawn;
+	}
+	
+	/**
+	 * Returns the number of primitives in the map
+	 * @return the total count
+	 */
+	public int getTotal() {
+		return total;
+	}
+	
+	/**
+	 * Draws the tally in the top left corner of area if it is shown
+	 * @param g: The graphics context to draw to
+	 * @param area: The area being painted
+	 */
+	public void draw(Graphics2D g, Rectangle area) {
+		if (!SHOWN)
+			return;
+		FontMetrics metrics = g.getFontMetrics();
+		g.setColor(Color.black);
+		g.fillRect(area.x, area.y, metrics.stringWidth(toString()) + 12, metrics.getHeight() + 6);
+		g.setColor(Color.white);
+		g.drawString(toString(), area.x + 6, area.y + 3 + metrics.getAscent());
+	}
+	
+	/**
+	 * Returns the tally as text
+	 */
+	public String toString() {
+		return "drawn " + drawn + " of " + total + " primitives";
+	}
+}
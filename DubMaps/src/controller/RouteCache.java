@@ -0,0 +1,108 @@
+package controller;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Edge;
+import model.Location;
+import model.MapGraph;
+import model.MapSnapshot;
+import model.Node;
+
+/*
+ * RouteCache holds the most recently requested route so painting and scrolling do not search
+ * the graph again. The route's edges are kept until a different start, destination or graph is
+ * requested or the graph publishes a change, since routes are found on the graph's published
+ * snapshot. Its bounds and screen-scaled segments are also kept until the map's zoom changes
+ */
+public class RouteCache {
+	private final UIManager ui;
+	private MapGraph model;
+	private Node<Location> start, dest;
+	private int version;  // the snapshot version the route was found in
+	private List<Edge<Location>> edges;
+	private double scaleWidth, scaleHeight;  // the zoom bounds and segments were scaled for
+	private Rectangle bounds;
+	private List<int[]> segments;
+
+	/**
+	 * Constructs an empty RouteCache
+	 * @param ui: The UIManager used to scale routes for the screen
+	 */
+	public RouteCache(UIManager ui) {
+		this.ui = ui;
+		model = null;
+		start = null;
+		dest = null;
+		edges = null;
+		bounds = null;
+		segments = null;
+	}
+
+	/**
+	 * Returns the shortest path from start to dest in model, searching only if it is not
+	 * already cached
+	 * @param model: The graph to route through
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @return a list of edges leading from start to dest, empty if none
+	 */
+	public List<Edge<Location>> getPath(MapGraph model, Node<Location> start,
+			Node<Location> dest) {
+		MapSnapshot snapshot = model.getSnapshot();
+		if (model != this.model || start != this.start || dest != this.dest ||
+			snapshot.getVersion() != version) {
+			List<Edge<Location>> path = snapshot.getPath(start, dest);
+			edges = path != null ? path : new ArrayList<Edge<Location>>();
+			this.model = model;
+			this.start = start;
+			this.dest = dest;
+			version = snapshot.getVersion();
+			bounds = null;
+			segments = null;
+		}
+		return edges;
+	}
+
+	/**
+	 * Returns the on-screen boundaries of the route from start to dest
+	 * @param model: The graph to route through
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @return a rectangle enclosing the entire path, in native image pixels
+	 */
+	public Rectangle getBounds(MapGraph model, Node<Location> start, Node<Location> dest) {
+		List<Edge<Location>> path = getPath(model, start, dest);
+		checkZoom();
+		if (bounds == null)
+			bounds = ui.getPathBounds(path);
+		return new Rectangle(bounds);  // callers may modify their copy
+	}
+
+	/**
+	 * Returns the route from start to dest as graphics drawLine arguments for the current
+	 * zoom
+	 * @param model: The graph to route through
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @return The path segments scaled to be drawn on-screen
+	 */
+	public List<int[]> getSegments(MapGraph model, Node<Location> start, Node<Location> dest) {
+		List<Edge<Location>> path = getPath(model, start, dest);
+		checkZoom();
+		if (segments == null)
+			segments = new ArrayList<int[]>(ui.getPath(path));
+		return segments;
+	}
+
+	// discards the scaled bounds and segments if the zoom has changed since they were made
+	private void checkZoom() {
+		if (ui.scaleWidth() != scaleWidth || ui.scaleHeight() != scaleHeight) {
+			scaleWidth = ui.scaleWidth();
+			scaleHeight = ui.scaleHeight();
+			bounds = null;
+			segments = null;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package controller;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import model.Location;
+import model.MapGraph;
+import model.Node;
+
+/*
+ * RouteLayer draws the route held by a RouteCache from a transparent image covering just the
+ * route, which is redrawn only when the route or the zoom changes. A route too large to keep
+ * as an image is drawn segment by segment instead
+ */
+public class RouteLayer {
+	private static final long MAX_PIXELS = 1L << 23;  // largest route image, 32MB
+	private final RouteCache route;
+	private final int width;
+	private final Color color;
+	private List<int[]> segments;  // the segments the image was drawn from
+	private BufferedImage image;  // null if the route is drawn directly
+	private Rectangle area;  // the display area the image covers
+
+	/**
+	 * Constructs a RouteLayer
+	 * @param route: The cache holding the route to draw
+	 * @param width: The route's line width, in display pixels
+	 * @param color: The route's color
+	 */
+	public RouteLayer(RouteCache route, int width, Color color) {
+		this.route = route;
+		this.width = width;
+		this.color = color;
+		segments = null;
+		image = null;
+		area = null;
+	}
+
+	/**
+	 * Draws the route from start to dest inside clip at the current zoom
+	 * @param g: The graphics context to draw to
+	 * @param clip: The area being painted, in display pixels
+	 * @param model: The graph to route through
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @param viewer: The component being painted, whose configuration the image is made for
+	 * @return the number of segments drawn as lines, zero if the cached image was copied
+	 */
+	public int draw(Graphics2D g, Rectangle clip, MapGraph model, Node<Location> start,
+			Node<Location> dest, Component viewer) {
+		List<int[]> current = route.getSegments(model, start, dest);
+		int drawn = 0;
+		if (current != segments) {
+			// the route or zoom changed, so draw the new route once into its own image
+			segments = current;
+			area = bounds(segments);
+			image = null;
+			if (!segments.isEmpty() && (long) area.width * area.height <= MAX_PIXELS) {
+				image = TileLayer.createImage(viewer, area.width, area.height,
+						Transparency.TRANSLUCENT);
+				Graphics2D ig = image.createGraphics();
+				ig.translate(-area.x, -area.y);
+				drawn = drawSegments(ig, area);
+				ig.dispose();
+			}
+		}
+		if (image == null)
+			return drawSegments(g, clip);
+		g.drawImage(image, area.x, area.y, null);
+		return drawn;
+	}
+
+	// draws the segments that may cross area, returning how many were drawn
+	private int drawSegments(Graphics2D g, Rectangle area) {
+		g.setStroke(new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+		g.setColor(color);
+		int drawn = 0;
+		for (int[] i: segments) {
+			if (Math.max(i[0], i[2]) + width >= area.x &&
+				Math.min(i[0], i[2]) - width <= area.x + area.width &&
+				Math.max(i[1], i[3]) + width >= area.y &&
+				Math.min(i[1], i[3]) - width <= area.y + area.height) {
+				g.drawLine(i[0], i[1], i[2], i[3]);
+				drawn++;
+			}
+		}
+		return drawn;
+	}
+
+	// returns the display area covered by segments drawn width pixels wide
+	private Rectangle bounds(List<int[]> segments) {
+		if (segments.isEmpty())
+			return new Rectangle();
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int[] i: segments) {
+			minX = Math.min(minX, Math.min(i[0], i[2]));
+			minY = Math.min(minY, Math.min(i[1], i[3]));
+			maxX = Math.max(maxX, Math.max(i[0], i[2]));
+			maxY = Math.max(maxY, Math.max(i[1], i[3]));
+		}
+		return new Rectangle(minX - width, minY - width, maxX - minX + 2 * width + 1,
+				maxY - minY + 2 * width + 1);
+	}
+}
@@ -0,0 +1,159 @@
+package controller;
+
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * TileLayer caches a layer of the display that only changes with the zoom, such as the map
+ * or the labels and markers drawn over it, as square tiles of display pixels. A translucent
+ * layer's tiles start clear, so the layers under it show through. Painting copies the tiles
+ * overlapping the clip, rendering only those missing. Every tile is discarded when the display
+ * size or the graph version changes, and the least recently drawn tiles are dropped once the
+ * cache exceeds its memory budget
+ */
+public class TileLayer {
+	private static final int TILE_SIZE = 512;
+	// bytes of tiles kept at once: a sixteenth of the heap, at most 64MB
+	private static final long MEMORY_BUDGET =
+			Math.min(Runtime.getRuntime().maxMemory() / 16, 64L << 20);
+	private final Painter painter;
+	private final int transparency;  // the Transparency of each tile
+	private final Map<Long, BufferedImage> tiles =  // tiles by column and row, least recent first
+			new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true);
+	private long tileBytes = 0;
+	private int width, height, version;  // the display size and graph version tiles show
+
+	/*
+	 * Painter draws the contents of a layer
+	 */
+	public interface Painter {
+		/**
+		 * Draws the layer's contents inside area
+		 * @param g: The graphics context to draw to, in display pixels
+		 * @param area: The area to draw, in display pixels
+		 * @return false if what was drawn is a temporary stand-in that must not be cached
+		 */
+		boolean paint(Graphics2D g, Rectangle area);
+	}
+
+	/**
+	 * Constructs an empty opaque TileLayer
+	 * @param painter: Draws the layer's contents when a tile is missing
+	 */
+	public TileLayer(Painter painter) {
+		this(painter, Transparency.OPAQUE);
+	}
+
+	/**
+	 * Constructs an empty TileLayer
+	 * @param painter: Draws the layer's contents when a tile is missing
+	 * @param transparency: Transparency.OPAQUE if painter covers every tile, or
+	 * 		  Transparency.TRANSLUCENT if the layers under it should show through
+	 */
+	public TileLayer(Painter painter, int transparency) {
+		this.painter = painter;
+		this.transparency = transparency;
+		width = -1;
+		height = -1;
+		version = -1;
+	}
+
+	/**
+	 * Draws the layer inside clip, rendering any tiles not already cached
+	 * @param g: The graphics context to draw to
+	 * @param clip: The area being painted, in display pixels
+	 * @param width: The width of the display the layer covers
+	 * @param height: The height of the display the layer covers
+	 * @param version: The version of the graph the layer shows
+	 * @param viewer: The component being painted, whose configuration tiles are made for
+	 * @return the number of tiles rendered
+	 */
+	public int draw(Graphics2D g, Rectangle clip, int width, int height, int version,
+			Component viewer) {
+		if (width != this.width || height != this.height || version != this.version) {
+			invalidate();
+			this.width = width;
+			this.height = height;
+			this.version = version;
+		}
+		if (width <= 0 || height <= 0)
+			return 0;
+		int fromCol = Math.max(0, clip.x / TILE_SIZE);
+		int fromRow = Math.max(0, clip.y / TILE_SIZE);
+		int toCol = Math.min((width - 1) / TILE_SIZE, (clip.x + clip.width - 1) / TILE_SIZE);
+		int toRow = Math.min((height - 1) / TILE_SIZE, (clip.y + clip.height - 1) / TILE_SIZE);
+
+		int rendered = 0;
+		for (int row = fromRow; row <= toRow; row++) {
+			for (int col = fromCol; col <= toCol; col++) {
+				long key = ((long) col << 32) | row;
+				BufferedImage tile = tiles.get(key);
+				if (tile == null) {
+					Rectangle area = new Rectangle(col * TILE_SIZE, row * TILE_SIZE,
+							Math.min(TILE_SIZE, width - col * TILE_SIZE),
+							Math.min(TILE_SIZE, height - row * TILE_SIZE));
+					tile = createImage(viewer, area.width, area.height, transparency);
+					Graphics2D tg = tile.createGraphics();
+					tg.translate(-area.x, -area.y);
+					tg.setClip(area);
+					boolean keep = painter.paint(tg, area);
+					tg.dispose();
+					rendered++;
+					if (keep) {
+						tiles.put(key, tile);
+						tileBytes += 4L * tile.getWidth() * tile.getHeight();
+						evict(key);
+					}
+				}
+				g.drawImage(tile, col * TILE_SIZE, row * TILE_SIZE, null);
+			}
+		}
+		return rendered;
+	}
+
+	/**
+	 * Discards every cached tile so the layer is drawn again when next painted
+	 * @modifies this
+	 */
+	public void invalidate() {
+		tiles.clear();
+		tileBytes = 0;
+	}
+
+	/**
+	 * Creates an image suited to being copied to viewer's display
+	 * @param viewer: The component the image will be drawn to, or null
+	 * @param width: The image's width
+	 * @param height: The image's height
+	 * @param transparency: A Transparency constant for the image
+	 * @return the new image
+	 */
+	static BufferedImage createImage(Component viewer, int width, int height,
+			int transparency) {
+		GraphicsConfiguration config = viewer != null ? viewer.getGraphicsConfiguration() : null;
+		if (config != null)
+			return config.createCompatibleImage(width, height, transparency);
+		return new BufferedImage(width, height, transparency == Transparency.OPAQUE ?
+				BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+	}
+
+	// removes the least recently drawn tiles other than keep until the cache fits the
+	// memory budget
+	private void evict(long keep) {
+		Iterator<Map.Entry<Long, BufferedImage>> it = tiles.entrySet().iterator();
+		while (tileBytes > MEMORY_BUDGET && it.hasNext()) {
+			Map.Entry<Long, BufferedImage> entry = it.next();
+			if (entry.getKey() == keep)
+				continue;
+			tileBytes -= 4L * entry.getValue().getWidth() * entry.getValue().getHeight();
+			it.remove();
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package controller;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/*
+ * TilePyramid draws a map image too large to hold in memory from square tiles stored on disk.
+ * Level 0 holds the image at full resolution and each following level halves the resolution,
+ * up to a level that fits in one tile. The tiles of level k are stored as
+ * <image>_tiles/k/<column>_<row>.<format>, and a properties file records the source image's
+ * size and modification time so a changed image is tiled again. Only the tiles intersecting
+ * the area being painted are loaded, from the coarsest level that still has at least one
+ * tile pixel per screen pixel, and the most recently drawn tiles are kept in memory.
+ * Run main with an image path to tile it ahead of time
+ */
+public class TilePyramid {
+	private static final int TILE_SIZE = 256;
+	private static final long CACHE_BYTES = 64L << 20;  // memory for loaded tiles
+	private static final long BAND_BYTES = 64L << 20;  // memory for source rows while tiling
+	private static final String INDEX = "pyramid.properties";
+	private final File directory;
+	private final String format;
+	private final int width, height, levels;
+	private final Map<String, BufferedImage> cache;  // loaded tiles, least recent first
+
+	/**
+	 * Opens the pyramid for the image at path, tiling the image first if it has not been tiled
+	 * or has changed since
+	 * @param path: The file path of the source image
+	 * @throws IOException Indicates the image or its tiles could not be read or written
+	 */
+	@SuppressWarnings("serial")
+	public TilePyramid(String path) throws IOException {
+		File source = new File(path);
+		String name = source.getName();
+		int dot = name.lastIndexOf('.');
+		directory = new File(source.getParentFile(),
+				(dot > 0 ? name.substring(0, dot) : name) + "_tiles");
+		format = name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".jpeg") ?
+				"jpg" : "png";
+
+		Properties index = readIndex();
+		if (index == null || !String.valueOf(source.lastModified()).equals(
+				index.getProperty("modified")) || !String.valueOf(source.length()).equals(
+				index.getProperty("length")))
+			index = build(source);
+		width = Integer.parseInt(index.getProperty("width"));
+		height = Integer.parseInt(index.getProperty("height"));
+		levels = Integer.parseInt(index.getProperty("levels"));
+
+		final int capacity = (int) (CACHE_BYTES / (4L * TILE_SIZE * TILE_SIZE));
+		cache = new LinkedHashMap<String, BufferedImage>(2 * capacity, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Tiles each image named in args
+	 * @param args: File paths of map images
+	 */
+	public static void main(String[] args) {
+		for (String path: args) {
+			try {
+				TilePyramid p = new TilePyramid(path);
+				System.out.println(path + ": " + p.getLevels() + " levels in " + p.directory);
+			} catch (IOException e) {
+				System.err.println(path + ": " + e.toString());
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the image at path has more than maxPixels pixels, reading only its
+	 * header
+	 * @param path: The file path of an image
+	 * @param maxPixels: The largest pixel count to be loaded whole
+	 * @return true if the image should be drawn from tiles
+	 * @throws IOException Indicates the image could not be read
+	 */
+	public static boolean isLarge(String path, long maxPixels) throws IOException {
+		Dimension size = getSize(path);
+		return (long) size.width * size.height > maxPixels;
+	}
+
+	/**
+	 * Returns the size of the image at path, reading only its header
+	 * @param path: The file path of an image
+	 * @return the image's width and height in pixels
+	 * @throws IOException Indicates the image could not be read
+	 */
+	public static Dimension getSize(String path) throws IOException {
+		ImageInputStream in = ImageIO.createImageInputStream(new File(path));
+		if (in == null)
+			throw new IOException("cannot open " + path);
+		try {
+			ImageReader reader = reader(in);
+			try {
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the source image's width in pixels
+	 * @return the full resolution width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the source image's height in pixels
+	 * @return the full resolution height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the number of levels in the pyramid
+	 * @return the level count
+	 */
+	public int getLevels() {
+		return levels;
+	}
+
+	/**
+	 * Returns the single tile of the coarsest level, an overview of the whole image
+	 * @return the lowest resolution copy of the image
+	 */
+	public BufferedImage getOverview() {
+		return getTile(levels - 1, 0, 0);
+	}
+
+	/**
+	 * Draws the part of the image inside clip with the whole image scaled to
+	 * displayWidth x displayHeight
+	 * @param g: The graphics context to draw to
+	 * @param clip: The area to draw, in display pixels, or null for all of it
+	 * @param displayWidth: The width of the whole image on screen
+	 * @param displayHeight: The height of the whole image on screen
+	 */
+	public void draw(Graphics2D g, Rectangle clip, int displayWidth, int displayHeight) {
+		if (displayWidth <= 0 || displayHeight <= 0)
+			return;
+		if (clip == null)
+			clip = new Rectangle(0, 0, displayWidth, displayHeight);
+
+		// use the coarsest level that still has a pixel for each screen pixel
+		double shrink = Math.min((double) width / displayWidth, (double) height / displayHeight);
+		int level = 0;
+		while (level + 1 < levels && (1 << (level + 1)) <= shrink)
+			level++;
+		int levelWidth = levelSize(width, level), levelHeight = levelSize(height, level);
+		double sx = (double) displayWidth / levelWidth, sy = (double) displayHeight / levelHeight;
+
+		int firstColumn = Math.max(0, (int) (clip.x / (sx * TILE_SIZE)));
+		int lastColumn = Math.min((levelWidth - 1) / TILE_SIZE,
+				(int) ((clip.x + clip.width) / (sx * TILE_SIZE)));
+		int firstRow = Math.max(0, (int) (clip.y / (sy * TILE_SIZE)));
+		int lastRow = Math.min((levelHeight - 1) / TILE_SIZE,
+				(int) ((clip.y + clip.height) / (sy * TILE_SIZE)));
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				BufferedImage tile = getTile(level, column, row);
+				if (tile == null)
+					continue;
+				// round both edges the same way so neighbouring tiles meet exactly
+				int x0 = (int) Math.round(column * TILE_SIZE * sx);
+				int y0 = (int) Math.round(row * TILE_SIZE * sy);
+				int x1 = (int) Math.round((column * TILE_SIZE + tile.getWidth()) * sx);
+				int y1 = (int) Math.round((row * TILE_SIZE + tile.getHeight()) * sy);
+				g.drawImage(tile, x0, y0, x1, y1, 0, 0, tile.getWidth(), tile.getHeight(), null);
+			}
+		}
+	}
+
+	// returns a tile, loading it from disk if it is not cached, or null if it cannot be read
+	private BufferedImage getTile(int level, int column, int row) {
+		String key = level + "/" + column + "_" + row;
+		BufferedImage tile = cache.get(key);
+		if (tile == null) {
+			try {
+				tile = ImageIO.read(tileFile(level, column, row));
+			} catch (IOException e) {
+				System.err.println(e.toString());
+			}
+			if (tile != null)
+				cache.put(key, tile);
+		}
+		return tile;
+	}
+
+	// cuts source into tiles at every level and returns the index describing them
+	private Properties build(File source) throws IOException {
+		ImageInputStream in = ImageIO.createImageInputStream(source);
+		if (in == null)
+			throw new IOException("cannot open " + source);
+		int w, h;
+		try {
+			ImageReader reader = reader(in);
+			try {
+				w = reader.getWidth(0);
+				h = reader.getHeight(0);
+				cutLevelZero(reader, w, h);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			in.close();
+		}
+
+		// each coarser level is made from 2 x 2 blocks of tiles from the level below
+		int level = 0;
+		while (levelSize(w, level) > TILE_SIZE || levelSize(h, level) > TILE_SIZE) {
+			level++;
+			shrinkLevel(level, levelSize(w, level), levelSize(h, level));
+		}
+
+		Properties index = new Properties();
+		index.setProperty("width", Integer.toString(w));
+		index.setProperty("height", Integer.toString(h));
+		index.setProperty("levels", Integer.toString(level + 1));
+		index.setProperty("modified", Long.toString(source.lastModified()));
+		index.setProperty("length", Long.toString(source.length()));
+		OutputStream out = new FileOutputStream(new File(directory, INDEX));
+		try {
+			index.store(out, "tile pyramid of " + source.getName());
+		} finally {
+			out.close();
+		}
+		return index;
+	}
+
+	// reads the source in bands of whole tile rows, sized to fit BAND_BYTES, and writes the
+	// full resolution tiles
+	private void cutLevelZero(ImageReader reader, int w, int h) throws IOException {
+		int bandRows = (int) Math.max(1, BAND_BYTES / (4L * w * TILE_SIZE)) * TILE_SIZE;
+		ImageReadParam param = reader.getDefaultReadParam();
+		for (int top = 0; top < h; top += bandRows) {
+			param.setSourceRegion(new Rectangle(0, top, w, Math.min(bandRows, h - top)));
+			BufferedImage band = reader.read(0, param);
+			for (int y = 0; y < band.getHeight(); y += TILE_SIZE) {
+				for (int x = 0; x < w; x += TILE_SIZE) {
+					BufferedImage tile = copy(band, x, y, Math.min(TILE_SIZE, w - x),
+							Math.min(TILE_SIZE, band.getHeight() - y));
+					write(tile, 0, x / TILE_SIZE, (top + y) / TILE_SIZE);
+				}
+			}
+		}
+	}
+
+	// writes the tiles of level, levelWidth x levelHeight pixels, from the level below
+	private void shrinkLevel(int level, int levelWidth, int levelHeight) throws IOException {
+		for (int row = 0; row * TILE_SIZE < levelHeight; row++) {
+			for (int column = 0; column * TILE_SIZE < levelWidth; column++) {
+				BufferedImage tile = new BufferedImage(
+						Math.min(TILE_SIZE, levelWidth - column * TILE_SIZE),
+						Math.min(TILE_SIZE, levelHeight - row * TILE_SIZE),
+						BufferedImage.TYPE_INT_RGB);
+				Graphics2D g = tile.createGraphics();
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+						RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				for (int dy = 0; dy < 2; dy++) {
+					for (int dx = 0; dx < 2; dx++) {
+						File f = tileFile(level - 1, 2 * column + dx, 2 * row + dy);
+						if (!f.exists())
+							continue;  // past the right or bottom edge
+						BufferedImage part = ImageIO.read(f);
+						g.drawImage(part, dx * TILE_SIZE / 2, dy * TILE_SIZE / 2,
+								(part.getWidth() + 1) / 2, (part.getHeight() + 1) / 2, null);
+					}
+				}
+				g.dispose();
+				write(tile, level, column, row);
+			}
+		}
+	}
+
+	// writes tile to its file, creating the level's directory if needed
+	private void write(BufferedImage tile, int level, int column, int row) throws IOException {
+		File f = tileFile(level, column, row);
+		if (!f.getParentFile().isDirectory() && !f.getParentFile().mkdirs())
+			throw new IOException("cannot create " + f.getParentFile());
+		if (!ImageIO.write(tile, format, f))
+			throw new IOException("no writer for " + format);
+	}
+
+	// returns the index file's contents, or null if the image has not been tiled
+	private Properties readIndex() {
+		File f = new File(directory, INDEX);
+		if (!f.exists())
+			return null;
+		Properties index = new Properties();
+		try {
+			InputStream in = new FileInputStream(f);
+			try {
+				index.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return index;
+	}
+
+	// returns the file holding a tile
+	private File tileFile(int level, int column, int row) {
+		return new File(directory, level + File.separator + column + "_" + row + "." + format);
+	}
+
+	// returns an opaque copy of part of image, so tiles do not share the band's memory
+	private static BufferedImage copy(BufferedImage image, int x, int y, int w, int h) {
+		BufferedImage result = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = result.createGraphics();
+		g.drawImage(image, 0, 0, w, h, x, y, x + w, y + h, null);
+		g.dispose();
+		return result;
+	}
+
+	// returns a reader positioned on in
+	private static ImageReader reader(ImageInputStream in) throws IOException {
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+		if (!readers.hasNext())
+			throw new IOException("unsupported image format");
+		ImageReader reader = readers.next();
+		reader.setInput(in, false, true);
+		return reader;
+	}
+
+	// returns the number of pixels along a side of length size at level
+	private static int levelSize(int size, int level) {
+		return (int) (((long) size + (1L << level) - 1) >> level);
+	}
+}
@@ -1,10 +1,7 @@
 package controller;
 
 import java.awt.Font;
-import java.awt.FontMetrics;
-import java.awt.Graphics2D;
 import java.awt.Rectangle;
-import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,7 +15,6 @@ import model.Location;
 public class UIManager {
 	private List<int[]> path;
 	private final MapManager map;
-	private Graphics2D context;
 	
 	/**
 	 * Constructs a new UIManager
@@ -27,7 +23,6 @@ public class UIManager {
 	public UIManager(MapManager map) {
 		path = new ArrayList<int[]>();
 		this.map = map;
-		context = null;
 	}
 	
 	/**
@@ -56,8 +51,8 @@ public class UIManager {
 	 */
 	public Rectangle getPathBounds(List<Edge<Location>> unscaledPath) {
 		List<int[]> segs = getPath(unscaledPath);
-		int maxX = 0, minX = map.getMap().getWidth();
-		int maxY = 0, minY = map.getMap().getHeight();
+		int maxX = 0, minX = map.getNativeWidth();
+		int maxY = 0, minY = map.getNativeHeight();
 		for (int[] i: segs) {
 			if (i[0] > maxX || i[2] > maxX)
 				maxX = Math.max(i[0], i[2]);
@@ -77,6 +72,21 @@ public class UIManager {
 		return new Rectangle(minX, minY, (maxX - minX), (maxY - minY));
 	}
 	
+	/**
+	 * Converts an area of the display, grown by margin display pixels on every side, to
+	 * native image pixels
+	 * @param view: The area of the display, such as the current clip
+	 * @param margin: The distance in display pixels a drawn primitive may extend from its
+	 * 		  location
+	 * @return { minX, minY, maxX, maxY } of the area in native image pixels
+	 */
+	public double[] getNativeArea(Rectangle view, int margin) {
+		return new double[] { (view.x - margin) * scaleWidth(),
+				(view.y - margin) * scaleHeight(),
+				(view.x + view.width + margin) * scaleWidth(),
+				(view.y + view.height + margin) * scaleHeight() };
+	}
+	
 	/**
 	 * Returns a list of scaled x y coordinates that represent building entrances
 	 * @param entrances: The list of entrances
@@ -93,58 +103,27 @@ public class UIManager {
 	}
 	
 	/**
-	 * Returns a list of graphics draw String method arguments containing locations
-	 * abbreviations and their display x y coordinates
-	 * @param buildings: A list of CampusLocations that represent destinations
-	 * @return The building's abbreviated names and drawString arguments
-	 */
-	public List<String[]> getBuildingLabels(List<Location> buildings) {
-		List<String[]> result = new ArrayList<String[]>();
-		for(Location c: buildings)		
-			result.add(centerText(c.getName(), 
-		        (int) (c.getX() / scaleWidth()),
-				(int) (c.getY() / scaleHeight())));
-		
-		return result;
-	}
-	
-	/**
-	 * Returns graphics draw String method arguments containing location
-	 * abbreviation and display x y coordinates
-	 * @param location: A CampusLocation that represents the building
-	 * @return The building's drawString arguments
+	 * Constructs a new font with size optimized for the current display
+	 * @return the new font
 	 */
-	public String[] getBuildingLabel(Location location) {
-		if (location == null) { return null; }
-		return centerText(location.getName(), 
-				   (int) (location.getX() / scaleWidth()),
-				   (int) (location.getY() / scaleHeight()));
+	public Font getFont() {
+		return new Font("Ariel", Font.BOLD, getFontSize());
 	}
 	
 	/**
-	 * Constructs a new font with size optimized for the current display
-	 * @return the new font
+	 * Returns the point size of the font optimized for the current display
+	 * @return the size of the font returned by getFont
 	 */
-	public Font getFont() {
-		int maxSize = 24, minSize = 16, size;
+	public int getFontSize() {
+		int maxSize = 24, minSize = 16;
 		
 		// Scale the font size to match window dimensions
 		if (scaleWidth() >= 5.0)
-			size = minSize;
+			return minSize;
 		else if (scaleWidth() <= 2.0)
-			size = maxSize;
+			return maxSize;
 		else
-			size = (int) (minSize + ((5 - scaleWidth()) * 3));
-		
-		return new Font("Ariel", Font.BOLD, size);
-	}
-	
-	/**
-	 * Sets the graphics context to be used for proper font rendering
-	 * @param g: The component's graphics object
-	 */
-	public void setGraphics(Graphics2D g) {
-		context = g;
+			return (int) (minSize + ((5 - scaleWidth()) * 3));
 	}
 	
 	/**
@@ -152,7 +131,7 @@ public class UIManager {
 	 * @return displayWidth / imageWidth 
 	 */
 	public double scaleWidth() {
-		return (1.0 * map.getMap().getWidth()) / (1.0 * map.getWidth());
+		return (1.0 * map.getNativeWidth()) / (1.0 * map.getWidth());
 	}
 	
 	/**
@@ -160,20 +139,6 @@ public class UIManager {
 	 * @return displayHeight / imageHeight
 	 */
 	public double scaleHeight() {
-		return (1.0 * map.getMap().getHeight()) / (1.0 * map.getHeight());
-	}
-	
-	// calculates drawString arguments to display text centered exactly at x, y
-	private String[] centerText(String text, int x, int y) {
-		String[] result = new String[3];
-		result[0] = text;
-		
-		// create a fontMetrics object to get text display dimensions
-		FontMetrics metrics = context.getFontMetrics(getFont());
-		Rectangle2D bounds = metrics.getStringBounds(text, context);
-		result[1] = Integer.toString((int) (x - (bounds.getWidth() / 2)));
-		result[2] = Integer.toString((int) (y + (bounds.getHeight() / 2)));
-		
-		return result;
+		return (1.0 * map.getNativeHeight()) / (1.0 * map.getHeight());
 	}
 }
@@ -0,0 +1,55 @@
+package mapMaker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.CompiledMap;
+import model.FileParser;
+import model.MapGraph;
+
+/*
+ * Converts the text data files of each named map, or of every map in the data directory if
+ * none are named, into a compiled map that FileParser loads in their place. Run from the
+ * project directory so the data files resolve
+ */
+public class MapCompilerMain {
+	// the directory holding map data files, and the suffix every map has a file for
+	private static final String DATA = "src/data/", PATHS = "_paths.dat";
+
+	public static void main(String[] args) {
+		List<String> maps = new ArrayList<String>();
+		for (String arg: args)
+			maps.add(arg);
+		if (maps.isEmpty())
+			maps = findMaps();
+
+		for (String map: maps) {
+			MapGraph graph = new FileParser(map, false).getGraph();
+			if (graph.getAllNodes().isEmpty()) {
+				System.err.println(map + ": no map data found, skipping");
+				continue;
+			}
+			try {
+				CompiledMap.write(graph, CompiledMap.getFile(map));
+				System.out.println(map + ": wrote " + CompiledMap.getFile(map));
+			} catch (IOException e) {
+				System.err.println(map + ": " + e.toString());
+			}
+		}
+	}
+
+	// returns the name of every map with a paths file in the data directory
+	private static List<String> findMaps() {
+		List<String> result = new ArrayList<String>();
+		File[] files = new File(DATA).listFiles();
+		if (files == null)
+			return result;
+		for (File f: files) {
+			if (f.getName().endsWith(PATHS))
+				result.add(f.getName().substring(0, f.getName().length() - PATHS.length()));
+		}
+		return result;
+	}
+}
@@ -3,9 +3,10 @@ package mapMaker;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,6 +15,9 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JTextField;
 
+import controller.Display;
+import controller.EdgeLayer;
+import model.EditJournal;
 import model.FileWriter;
 import model.Location;
 import model.Node;
@@ -26,10 +30,11 @@ import navigator.MapPanel;
  * in that map. Allows the user to add to the map, and save changes
  */
 public class MapMakerPanel extends MapPanel{
-	private final int OFFSET = 2; // outlined text border width
 	private final int MAX_DISTANCE = 8; // max acceptable click distance from target
 	private int[] closestNode, selectedNode, mouseXY;
 	private boolean nodeSelected;
+	private EdgeLayer edges;  // every path, kept as geometry ready to draw
+	private EditJournal journal;  // keeps each edit as it is made, or null if it cannot
 	private Mode mode;
 	public enum Mode { OBSERVE, ADD_PATHS, ADD_BUILDINGS, ADD_LABELS }
 	
@@ -42,7 +47,18 @@ public class MapMakerPanel extends MapPanel{
 		selectedNode = new int[2];
 		mouseXY = new int[2];
 		nodeSelected = false;
+		edges = new EdgeLayer(model, ui);
 		mode = Mode.OBSERVE;
+		try {
+			if (editsDeclined)
+				EditJournal.discard(Display.getMapFile());
+			journal = new EditJournal(Display.getMapFile(), model);
+		} catch (IOException e) {
+			System.out.println("file error: edits will only be kept if the map is saved");
+			e.printStackTrace();
+			journal = null;
+			warnUnjournaled();
+		}
 	}
 	
 	/**
@@ -111,8 +127,14 @@ public class MapMakerPanel extends MapPanel{
 	 * @param y: the mouse's y location
 	 */
 	public void mouseMoved(int x, int y) {
-		highlightClosestNode(x, y);
+		int[] previous = mouseXY;
 		mouseXY = new int[]{ x, y };
+		highlightClosestNode(x, y);
+		// the path from the selected node follows the mouse pointer
+		if (nodeSelected && (previous[0] != x || previous[1] != y)) {
+			repaint(lineArea(selectedNode, previous));
+			repaint(lineArea(selectedNode, mouseXY));
+		}
 	}
 	
 	/**
@@ -151,16 +173,19 @@ public class MapMakerPanel extends MapPanel{
 	}
 	
 	/**
-	 * Prompts the user for a filename and writes out the current map to data files
+	 * Prompts the user for a filename and writes out the current map to data files. Saving
+	 * over the map being edited also clears the edits journaled since it was last saved
 	 */
 	public void saveMap() {
-		new FileWriter(model);
+		new FileWriter(model, journal);
 	}
 		
 	/**
-	 * Handles all graphical output for mapMaker
+	 * Handles all graphical output for mapMaker. Paths are drawn from their retained layer,
+	 * and the rest of the map is drawn directly since it changes with each edit
+	 * @param g2d: The component's graphics object
 	 */
-	protected void paintComponent(Graphics g) {
+	protected void paintMap(Graphics2D g2d) {
 		// set appropriate component sizes for the current mode
 		int pathWidth, markerWidth;
 		if (mode == Mode.OBSERVE) {
@@ -171,53 +196,46 @@ public class MapMakerPanel extends MapPanel{
 			markerWidth = 5;
 		}
 		
-		Graphics2D g2d = (Graphics2D) g;
-		super.paintComponent(g2d);
+		Rectangle clip = g2d.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		counter.reset();
 		
 		// set graphics preferences
 		g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
 				RenderingHints.VALUE_TEXT_ANTIALIAS_LCD_HRGB);
 		g2d.setFont(ui.getFont());
 		
-		// update ui graphics
-		ui.setGraphics(g2d);
-		
 		//draw map image
-		int[] args = map.getImageArgs();
-		g2d.drawImage(map.getMap(), args[0], args[1], args[2], args[3],
-				args[4], args[5], args[6], args[7], null);
+		map.drawMap(g2d, this);
 		
-		// draw every path on the map
-		g2d.setStroke(new BasicStroke(pathWidth, BasicStroke.JOIN_ROUND, BasicStroke.CAP_ROUND));
+		// draw every path crossing the painted area
 		g2d.setColor(Color.blue);
-		for (int[] i: ui.getPath(model.getAllPaths()))
-			g2d.drawLine(i[0], i[1], i[2], i[3]);
+		counter.count(edges.draw(g2d, clip, pathWidth), edges.size());
 		
 		// draw a path from the selected node to the mouse pointer
 		if (nodeSelected) {
+			g2d.setStroke(new BasicStroke(pathWidth, BasicStroke.JOIN_ROUND,
+					BasicStroke.CAP_ROUND));
 			g2d.drawLine(selectedNode[0], selectedNode[1], mouseXY[0], mouseXY[1]);
 		}
 		
 		// Print building labels
-		for(String[] s: ui.getBuildingLabels(model.getLabels())) {
-			int x = Integer.parseInt(s[1]);
-			int y = Integer.parseInt(s[2]);
-		    // outline text in black
-			g2d.setColor(Color.black);
-			g2d.drawString(s[0], x - OFFSET, y - OFFSET);
-			g2d.drawString(s[0], x + OFFSET, y + OFFSET);
-			g2d.drawString(s[0], x + OFFSET, y - OFFSET);
-			g2d.drawString(s[0], x - OFFSET, y + OFFSET);
-			// print the label 
-			g2d.setColor(Color.white);
-			g2d.drawString(s[0], x, y);
-		}
+		double[] area = ui.getNativeArea(clip, LABEL_MARGIN);
+		List<Location> labels = model.getLabelsIn(area[0], area[1], area[2], area[3]);
+		counter.count(labels.size(), counter.isShown() ? model.getLabels().size() : 0);
+		labelCache.draw(g2d, labels);
 		
 		// draw a marker on each node and highlight the node which
 		// the mouse currently points to
 		g2d.setStroke(new BasicStroke(1, BasicStroke.JOIN_ROUND, BasicStroke.CAP_ROUND));
 		int offset = markerWidth, size = 2 * offset;		
-		for(int[] i: ui.getBuildingEntrances(model.getAllLocations())) {
+		area = ui.getNativeArea(clip, MARKER_MARGIN);
+		List<Location> nodes = new ArrayList<Location>();
+		for (Node<Location> n: model.getNodesIn(area[0], area[1], area[2], area[3]))
+			nodes.add(n.getLocation());
+		counter.count(nodes.size(), counter.isShown() ? model.getAllNodes().size() : 0);
+		for(int[] i: ui.getBuildingEntrances(nodes)) {
 			g2d.setColor(Color.green);
 			// label the closest building with a different color			
 			if (closestNode[0] == i[0] && closestNode[1] == i[1])
@@ -229,7 +247,9 @@ public class MapMakerPanel extends MapPanel{
 		}
 		
 		// Highlight building nodes with a different color
-		for(int[] i: ui.getBuildingEntrances(model.getBuildings())) {
+		List<Location> buildings = model.getBuildingsIn(area[0], area[1], area[2], area[3]);
+		counter.count(buildings.size(), counter.isShown() ? model.getBuildings().size() : 0);
+		for(int[] i: ui.getBuildingEntrances(buildings)) {
 			g2d.setColor(Color.magenta);
 			// label the closest building with a different color			
 			if (closestNode[0] == i[0] && closestNode[1] == i[1])
@@ -239,6 +259,7 @@ public class MapMakerPanel extends MapPanel{
 			g2d.setColor(Color.black);
 			g2d.drawOval(i[0] - offset - 1, i[1] - offset - 1, size + 2, size + 2);
 		}
+		counter.draw(g2d, getVisibleRect());
 	}
 
 	// allows users to add the first node or building to an empty map
@@ -274,7 +295,12 @@ public class MapMakerPanel extends MapPanel{
 				"Enter a name for this Building",
 				"Enter a 3-letter abreviated name");
 		if (name != null) {
-			model.add(new Node<Location>(new Location(name[0], name[1], x, y)));
+			Node<Location> node = new Node<Location>(new Location(name[0], name[1], x, y));
+			model.add(node);
+			model.publish();
+			if (journal != null)
+				journaled(journal.addBuilding(node));
+			edges.update();
 			addEdge(model.getNode(x, y));
 		}
 	}
@@ -290,8 +316,13 @@ public class MapMakerPanel extends MapPanel{
 			return;
 		}
 		
-		if (name != null)
-			model.addLabel(new Location(name[0], name[1], x, y));
+		if (name != null) {
+			Location label = new Location(name[0], name[1], x, y);
+			model.addLabel(label);
+			model.publish();
+			if (journal != null)
+				journaled(journal.addLabel(label));
+		}
 	}
 	 
 	// prompts the user for full name and abbreviation as text input
@@ -329,7 +360,12 @@ public class MapMakerPanel extends MapPanel{
 	
 	// adds the location x, y as a node 
 	private void addNode(int x, int y) {
-		model.add(new Node<Location>(x, y));
+		Node<Location> node = new Node<Location>(x, y);
+		model.add(node);
+		model.publish();
+		if (journal != null)
+			journaled(journal.addNode(node));
+		edges.update();
 	}	
 	
 	// add edges between node and selectedNode
@@ -343,8 +379,30 @@ public class MapMakerPanel extends MapPanel{
 			Math.pow(node.getLocation().getX() - selected.getLocation().getX(), 2) +
 			Math.pow(node.getLocation().getY() - selected.getLocation().getY(), 2));
 		
-		node.addEdge(selected, distance);
-		selected.addEdge(node, distance);
+		int before = node.getEdges().size() + selected.getEdges().size();
+		model.addEdge(node, selected, distance);
+		model.addEdge(selected, node, distance);
+		model.publish();
+		if (journal != null)
+			journaled(journal.addEdge(node, selected, distance));
+		if (node.getEdges().size() + selected.getEdges().size() > before)
+			edges.addEdge(node, selected);
+		else
+			edges.update();
+	}
+	
+	// stops journaling and warns the user if an edit could not be journaled
+	private void journaled(boolean written) {
+		if (written) { return; }
+		journal = null;
+		warnUnjournaled();
+	}
+	
+	// tells the user that edits are no longer kept as they are made
+	private void warnUnjournaled() {
+		JOptionPane.showMessageDialog(null, "Edits can no longer be kept as they are made.\n"
+				+ "Save the map before closing to keep them.", "File error",
+				JOptionPane.WARNING_MESSAGE);
 	}
 	
 	// Highlights the closest node to the mouse pointer
@@ -352,6 +410,7 @@ public class MapMakerPanel extends MapPanel{
 		x *= ui.scaleWidth();
 		y *= ui.scaleHeight();
 		Node<Location> n = model.getClosestNode(x, y, MAX_DISTANCE);
+		int[] previous = closestNode.clone();
 		
 		// reset closestNode if a the mouse if too far from a node
 		if (n == null) { 
@@ -365,6 +424,13 @@ public class MapMakerPanel extends MapPanel{
 			closestNode[0] = loc[0];
 			closestNode[1] = loc[1];
 		}
-		repaint();
+		repaintMarker(previous, closestNode);
+	}
+	
+	// returns the display area covered by a path drawn from a to b
+	private Rectangle lineArea(int[] a, int[] b) {
+		int width = 7;  // the widest path stroke
+		return new Rectangle(Math.min(a[0], b[0]) - width, Math.min(a[1], b[1]) - width,
+				Math.abs(a[0] - b[0]) + 2 * width + 1, Math.abs(a[1] - b[1]) + 2 * width + 1);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,376 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Abstraction function: CompactGraph is a frozen, integer indexed copy of a MapGraph stored in
+ * compressed sparse row form. Node i is located at (xs[i], ys[i]) and its outgoing edges are
+ * the entries offsets[i] through offsets[i + 1] - 1 of targets and weights. Its incoming edges
+ * are the entries reverseOffsets[i] through reverseOffsets[i + 1] - 1 of sources and
+ * reverseWeights
+ *
+ * Representation invariant: offsets has size() + 1 non-decreasing entries, offsets[0] is 0 and
+ * offsets[size()] is edgeCount(), and the same holds for reverseOffsets. Every entry of targets
+ * and sources is a valid node id, and ids maps each node in nodes to its index
+ */
+public class CompactGraph {
+
+	private final Node<Location>[] nodes;
+	private final double[] xs, ys;
+	private final int[] offsets;
+	private final int[] targets;
+	private final double[] weights;
+	private final int[] reverseOffsets;
+	private final int[] sources;
+	private final double[] reverseWeights;
+	private final Map<Node<Location>, Integer> ids;
+	private final int version;
+	private final double heuristicScale;  // keeps straight-line estimates below path lengths
+	private final boolean DEBUG = true;
+
+	/**
+	 * Builds a compact copy of every node and edge currently in graph
+	 * @param graph: The graph to be copied
+	 * @requires graph is not null
+	 */
+	@SuppressWarnings("unchecked")
+	public CompactGraph(MapGraph graph) {
+		List<Node<Location>> all = graph.getAllNodes();
+		int n = all.size();
+		version = graph.getVersion();
+		nodes = (Node<Location>[]) new Node<?>[n];
+		xs = new double[n];
+		ys = new double[n];
+		offsets = new int[n + 1];
+		ids = new HashMap<Node<Location>, Integer>(2 * n);
+
+		// assign dense ids
+		for (int i = 0; i < n; i++) {
+			Node<Location> node = all.get(i);
+			nodes[i] = node;
+			xs[i] = node.getLocation().getX();
+			ys[i] = node.getLocation().getY();
+			ids.put(node, i);
+		}
+
+		// count edges so the edge arrays are allocated once. An edge to a node that was never
+		// added to the graph cannot be routed over, so it is left out
+		for (int i = 0; i < n; i++) {
+			int count = 0;
+			for (Edge<Location> edge: nodes[i].getEdges())
+				if (ids.containsKey(edge.getChild()))
+					count++;
+			offsets[i + 1] = offsets[i] + count;
+		}
+
+		// fill each node's row of the edge arrays in the node's own edge order
+		targets = new int[offsets[n]];
+		weights = new double[offsets[n]];
+		for (int i = 0; i < n; i++) {
+			int e = offsets[i];
+			for (Edge<Location> edge: nodes[i].getEdges()) {
+				Integer target = ids.get(edge.getChild());
+				if (target == null)
+					continue;
+				targets[e] = target;
+				weights[e] = edge.getLength();
+				e++;
+			}
+		}
+		
+		reverseOffsets = new int[n + 1];
+		sources = new int[targets.length];
+		reverseWeights = new double[targets.length];
+		fillReverse();
+		heuristicScale = findHeuristicScale();
+		checkRep();
+	}
+
+	/**
+	 * Builds a compact graph from arrays already in compressed sparse row form, such as those
+	 * read from a compiled map, without a MapGraph. The nodes' own edge lists are not used
+	 * @param nodes: The node with each id
+	 * @param xs: The x coordinate of each node
+	 * @param ys: The y coordinate of each node
+	 * @param offsets: The first edge of each node's row, followed by the edge count
+	 * @param targets: The id of the node each edge leads to
+	 * @param weights: The length of each edge
+	 * @param version: The version reported by getVersion
+	 * @requires the arrays satisfy the representation invariant and are not changed afterwards
+	 */
+	CompactGraph(Node<Location>[] nodes, double[] xs, double[] ys, int[] offsets, int[] targets,
+			double[] weights, int version) {
+		int n = nodes.length;
+		this.nodes = nodes;
+		this.xs = xs;
+		this.ys = ys;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.version = version;
+		ids = new HashMap<Node<Location>, Integer>(2 * n);
+		for (int i = 0; i < n; i++)
+			ids.put(nodes[i], i);
+
+		reverseOffsets = new int[n + 1];
+		sources = new int[targets.length];
+		reverseWeights = new double[targets.length];
+		fillReverse();
+		heuristicScale = findHeuristicScale();
+		checkRep();
+	}
+
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return the node count
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the number of directed edges in the graph
+	 * @return the edge count
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * Returns the version of the MapGraph this was built from
+	 * @return the source graph's version
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the id of node, or -1 if node is not in the graph
+	 * @param node: The node to be searched for
+	 * @return node's id
+	 */
+	public int getId(Node<Location> node) {
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the node with the given id
+	 * @param id: A valid node id
+	 * @return the node
+	 */
+	public Node<Location> getNode(int id) {
+		return nodes[id];
+	}
+
+	/**
+	 * Returns the location of the node with the given id
+	 * @param id: A valid node id
+	 * @return the node's location
+	 */
+	public Location getLocation(int id) {
+		return nodes[id].getLocation();
+	}
+
+	/**
+	 * Returns the x coordinate of the node with the given id
+	 * @param id: A valid node id
+	 * @return the node's x coordinate
+	 */
+	public double getX(int id) {
+		return xs[id];
+	}
+
+	/**
+	 * Returns the y coordinate of the node with the given id
+	 * @param id: A valid node id
+	 * @return the node's y coordinate
+	 */
+	public double getY(int id) {
+		return ys[id];
+	}
+
+	/**
+	 * Returns the index of the first edge leaving the node with the given id
+	 * @param id: A valid node id
+	 * @return the first edge index of id's row
+	 */
+	public int firstEdge(int id) {
+		return offsets[id];
+	}
+
+	/**
+	 * Returns the index one past the last edge leaving the node with the given id
+	 * @param id: A valid node id
+	 * @return the end edge index of id's row
+	 */
+	public int endEdge(int id) {
+		return offsets[id + 1];
+	}
+
+	/**
+	 * Returns the id of the node an edge leads to
+	 * @param edge: A valid edge index
+	 * @return the edge's child id
+	 */
+	public int getTarget(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * Returns the length of an edge
+	 * @param edge: A valid edge index
+	 * @return the edge's length
+	 */
+	public double getWeight(int edge) {
+		return weights[edge];
+	}
+
+	/**
+	 * Returns the index of the first edge entering the node with the given id
+	 * @param id: A valid node id
+	 * @return the first reverse edge index of id's row
+	 */
+	public int firstReverseEdge(int id) {
+		return reverseOffsets[id];
+	}
+
+	/**
+	 * Returns the index one past the last edge entering the node with the given id
+	 * @param id: A valid node id
+	 * @return the end reverse edge index of id's row
+	 */
+	public int endReverseEdge(int id) {
+		return reverseOffsets[id + 1];
+	}
+
+	/**
+	 * Returns the id of the node a reverse edge leaves from
+	 * @param edge: A valid reverse edge index
+	 * @return the edge's parent id
+	 */
+	public int getSource(int edge) {
+		return sources[edge];
+	}
+
+	/**
+	 * Returns the length of a reverse edge
+	 * @param edge: A valid reverse edge index
+	 * @return the edge's length
+	 */
+	public double getReverseWeight(int edge) {
+		return reverseWeights[edge];
+	}
+
+	/**
+	 * Returns a lower bound on the length of any path between two nodes, computed as their
+	 * straight-line distance scaled so it never exceeds the length of an edge
+	 * @param a: A valid node id
+	 * @param b: A valid node id
+	 * @return a consistent estimate of the distance from a to b
+	 */
+	public double estimate(int a, int b) {
+		double dx = xs[a] - xs[b], dy = ys[a] - ys[b];
+		return heuristicScale * Math.sqrt(dx * dx + dy * dy);
+	}
+	
+	/**
+	 * Returns a hash of every node coordinate and edge in id order, used to check that data
+	 * derived from a graph still matches it. The order of the edges within a row does not
+	 * change the hash, since it depends on the generated names of path nodes
+	 * @return the graph's fingerprint
+	 */
+	public long fingerprint() {
+		long hash = 1125899906842597L;
+		for (int i = 0; i < nodes.length; i++) {
+			hash = 31 * hash + Double.doubleToLongBits(xs[i]);
+			hash = 31 * hash + Double.doubleToLongBits(ys[i]);
+			long row = 0;
+			for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+				long edge = 31L * targets[e] + Double.doubleToLongBits(weights[e]);
+				row += edge * 0x9E3779B97F4A7C15L;  // spread the bits before summing
+			}
+			hash = 31 * hash + row;
+		}
+		return hash;
+	}
+	
+	/**
+	 * Builds the list of edges visiting each node id in route, in order
+	 * @param route: Node ids of a path, route[0] being the start
+	 * @param length: The number of ids in route to use
+	 * @return a list of edges leading from route[0] to route[length - 1]
+	 */
+	public List<Edge<Location>> toEdges(int[] route, int length) {
+		List<Edge<Location>> result = new ArrayList<Edge<Location>>(Math.max(length - 1, 0));
+		for (int i = 1; i < length; i++) {
+			int parent = route[i - 1], child = route[i];
+			result.add(new Edge<Location>(nodes[parent], nodes[child],
+					weightBetween(parent, child)));
+		}
+		return result;
+	}
+
+	// counts incoming edges per node, then places each edge in its child's reverse row
+	private void fillReverse() {
+		int n = nodes.length;
+		for (int t: targets)
+			reverseOffsets[t + 1]++;
+		for (int i = 0; i < n; i++)
+			reverseOffsets[i + 1] += reverseOffsets[i];
+		int[] next = Arrays.copyOf(reverseOffsets, n);
+		for (int i = 0; i < n; i++) {
+			for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+				int r = next[targets[e]]++;
+				sources[r] = i;
+				reverseWeights[r] = weights[e];
+			}
+		}
+	}
+
+	// returns the smallest ratio of edge length to straight-line distance over every edge.
+	// Edges drawn in MapMaker have a ratio of 1, files measured in other units may not
+	private double findHeuristicScale() {
+		double scale = Double.POSITIVE_INFINITY;
+		for (int i = 0; i < nodes.length; i++) {
+			for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+				double dx = xs[i] - xs[targets[e]], dy = ys[i] - ys[targets[e]];
+				double straight = Math.sqrt(dx * dx + dy * dy);
+				if (straight > 0 && weights[e] < scale * straight)
+					scale = weights[e] / straight;
+			}
+		}
+		return scale == Double.POSITIVE_INFINITY ? 0.0 : scale;
+	}
+	
+	// returns the length of the shortest edge from parent to child
+	private double weightBetween(int parent, int child) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int e = offsets[parent]; e < offsets[parent + 1]; e++) {
+			if (targets[e] == child && weights[e] < best)
+				best = weights[e];
+		}
+		return best;
+	}
+
+	/**
+	 * Checks that the representation invariant holds
+	 */
+	private void checkRep() {
+		if (DEBUG) {
+			assert (offsets[0] == 0);
+			assert (offsets[nodes.length] == targets.length);
+			for (int i = 0; i < nodes.length; i++)
+				assert (offsets[i] <= offsets[i + 1]);
+			for (int t: targets)
+				assert (t >= 0 && t < nodes.length);
+			assert (reverseOffsets[nodes.length] == sources.length);
+			for (int t: sources)
+				assert (t >= 0 && t < nodes.length);
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import model.MapGraph.RoutingMode;
+
+/*
+ * CompiledMap reads and writes a MapGraph as a single binary file that can be read in one call
+ * and loaded without parsing text. All values are big endian and the file is laid out as:
+ *
+ *   header:  int MAGIC, int FORMAT, long checksum, int nodes, int edges, int labels,
+ *            int strings, int stringBytes
+ *   strings: int offsets[strings + 1], UTF-8 bytes[stringBytes]
+ *   nodes:   double xs[nodes], double ys[nodes], int shortNames[nodes], int longNames[nodes]
+ *   edges:   int offsets[nodes + 1], int targets[edges], double weights[edges]
+ *   labels:  double xs[labels], double ys[labels], int shortNames[labels], int longNames[labels]
+ *
+ * Names are indices into the string table. Path nodes have no stored names (-1) and are given
+ * fresh ones on load, as FileParser does. The checksum is the CRC32 of everything after it.
+ * A map can be read as a MapGraph, to edit or draw, or straight into a MapSnapshot, to route
+ */
+public class CompiledMap {
+	private static final String PATH = "src/data/", COMPILED = "_compiled.map";
+	private static final int MAGIC = 0x4455424D;  // "DUBM"
+	private static final int FORMAT = 1;
+	private static final int HEADER = 36;  // bytes before the string table
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Returns the path of the compiled file for the map with the given name
+	 * @param filename: the name of the map, as passed to FileParser
+	 * @return the compiled map's path
+	 */
+	public static String getFile(String filename) {
+		return PATH + filename + COMPILED;
+	}
+
+	/**
+	 * Writes every node, edge and label in graph to file, replacing it atomically
+	 * @param graph: The graph to be written
+	 * @param file: The path of the file to write
+	 * @throws IOException Indicates the file could not be written, in which case it is
+	 * 		   unchanged
+	 */
+	public static void write(MapGraph graph, String file) throws IOException {
+		CompactGraph compact = graph.getCompactGraph();
+		List<Location> labels = graph.getLabels();
+		int n = compact.size(), m = compact.edgeCount();
+
+		// collect each distinct name once
+		List<byte[]> strings = new ArrayList<byte[]>();
+		Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		int[] nodeShort = new int[n], nodeLong = new int[n];
+		int[] labelShort = new int[labels.size()], labelLong = new int[labels.size()];
+		for (int i = 0; i < n; i++) {
+			Location l = compact.getLocation(i);
+			boolean path = l.getLongName().startsWith("Path");
+			nodeShort[i] = path ? -1 : intern(l.getName(), strings, stringIds);
+			nodeLong[i] = path ? -1 : intern(l.getLongName(), strings, stringIds);
+		}
+		for (int i = 0; i < labels.size(); i++) {
+			labelShort[i] = intern(labels.get(i).getName(), strings, stringIds);
+			labelLong[i] = intern(labels.get(i).getLongName(), strings, stringIds);
+		}
+		int stringBytes = 0;
+		for (byte[] s: strings)
+			stringBytes += s.length;
+
+		long size = HEADER + 4L * (strings.size() + 1) + stringBytes + 24L * n + 4L * (n + 1)
+				+ 12L * m + 24L * labels.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("map too large to compile: " + size + " bytes");
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		buffer.putInt(MAGIC).putInt(FORMAT).putLong(0L);  // checksum is filled in last
+		buffer.putInt(n).putInt(m).putInt(labels.size()).putInt(strings.size())
+			.putInt(stringBytes);
+
+		int offset = 0;
+		for (byte[] s: strings) {
+			buffer.putInt(offset);
+			offset += s.length;
+		}
+		buffer.putInt(offset);
+		for (byte[] s: strings)
+			buffer.put(s);
+
+		for (int i = 0; i < n; i++)
+			buffer.putDouble(compact.getX(i));
+		for (int i = 0; i < n; i++)
+			buffer.putDouble(compact.getY(i));
+		for (int i = 0; i < n; i++)
+			buffer.putInt(nodeShort[i]);
+		for (int i = 0; i < n; i++)
+			buffer.putInt(nodeLong[i]);
+
+		for (int i = 0; i <= n; i++)
+			buffer.putInt(i < n ? compact.firstEdge(i) : m);
+		for (int e = 0; e < m; e++)
+			buffer.putInt(compact.getTarget(e));
+		for (int e = 0; e < m; e++)
+			buffer.putDouble(compact.getWeight(e));
+
+		for (Location l: labels)
+			buffer.putDouble(l.getX());
+		for (Location l: labels)
+			buffer.putDouble(l.getY());
+		for (int i = 0; i < labels.size(); i++)
+			buffer.putInt(labelShort[i]);
+		for (int i = 0; i < labels.size(); i++)
+			buffer.putInt(labelLong[i]);
+
+		buffer.putLong(8, checksum(buffer, 16, buffer.capacity()));
+		buffer.rewind();
+		FileWriter.replace(file, buffer);
+	}
+
+	/**
+	 * Reads file and builds the graph it describes
+	 * @param file: The path of a file written by write
+	 * @return the graph stored in file
+	 * @throws IOException Indicates the file could not be read, is of an unknown format, or
+	 * fails its checksum
+	 */
+	public static MapGraph read(String file) throws IOException {
+		Contents contents = decode(file);
+		try {
+			return contents.toGraph();
+		} catch (RuntimeException e) {
+			throw corrupt(file, e);
+		}
+	}
+
+	/**
+	 * Reads file and builds a snapshot of the map it describes straight from its
+	 * arrays, without building a MapGraph or its indexes. This suits programs that only route,
+	 * such as RoutingService; the map must be read with read to be edited or drawn
+	 * @param file: The path of a file written by write
+	 * @param routing: The search the snapshot's getPath uses when no mode is given
+	 * @return a snapshot, at version 0, of the map stored in file
+	 * @throws IOException Indicates the file could not be read, is of an unknown format, or
+	 * fails its checksum
+	 */
+	public static MapSnapshot readSnapshot(String file, RoutingMode routing) throws IOException {
+		Contents contents = decode(file);
+		try {
+			return contents.toSnapshot(routing);
+		} catch (RuntimeException e) {
+			throw corrupt(file, e);
+		}
+	}
+
+	// reads file onto the heap, verifies it and reads its arrays. The file is not memory
+	// mapped, since a mapping keeps the file open, and locked on Windows, until it is collected
+	private static Contents decode(String file) throws IOException {
+		Path path = Paths.get(file);
+		if (Files.size(path) > Integer.MAX_VALUE)
+			throw new IOException("corrupt map file " + file + ": bad length");
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		if (buffer.capacity() < HEADER)
+			throw new IOException("corrupt map file " + file + ": bad length");
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		if (buffer.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a compiled map");
+		if (buffer.getInt(4) != FORMAT)
+			throw new IOException(file + " has unsupported format " + buffer.getInt(4));
+		if (buffer.getLong(8) != checksum(buffer, 16, buffer.capacity()))
+			throw new IOException("corrupt map file " + file + ": checksum mismatch");
+
+		try {
+			return new Contents(buffer);
+		} catch (RuntimeException e) {
+			throw corrupt(file, e);
+		}
+	}
+
+	// returns the exception reporting that file's contents are malformed. A well formed
+	// checksum over malformed contents means the writer was broken
+	private static IOException corrupt(String file, RuntimeException e) {
+		return new IOException("corrupt map file " + file + ": " + e, e);
+	}
+
+	// returns the id of s in strings, adding it if it is new
+	private static int intern(String s, List<byte[]> strings, Map<String, Integer> ids) {
+		Integer id = ids.get(s);
+		if (id == null) {
+			id = strings.size();
+			strings.add(s.getBytes(UTF8));
+			ids.put(s, id);
+		}
+		return id;
+	}
+
+	// returns the CRC32 of buffer's bytes from start up to end, leaving its position unchanged
+	private static long checksum(ByteBuffer buffer, int start, int end) {
+		ByteBuffer view = buffer.duplicate();
+		view.position(start);
+		view.limit(end);
+		CRC32 crc = new CRC32();
+		crc.update(view);
+		return crc.getValue();
+	}
+
+	// reads count ints starting at buffer's position, advancing past them
+	private static int[] ints(ByteBuffer buffer, int count) {
+		int[] result = new int[count];
+		buffer.asIntBuffer().get(result);
+		buffer.position(buffer.position() + 4 * count);
+		return result;
+	}
+
+	// reads count doubles starting at buffer's position, advancing past them
+	private static double[] doubles(ByteBuffer buffer, int count) {
+		double[] result = new double[count];
+		buffer.asDoubleBuffer().get(result);
+		buffer.position(buffer.position() + 8 * count);
+		return result;
+	}
+
+	/*
+	 * Contents is the arrays of a verified compiled map, from which either a MapGraph or a
+	 * MapSnapshot is built
+	 */
+	private static class Contents {
+		private final String[] strings;
+		private final double[] xs, ys, labelXs, labelYs;
+		private final int[] shortNames, longNames, labelShort, labelLong;
+		private final int[] offsets, targets;
+		private final double[] weights;
+
+		// reads the arrays of a verified buffer
+		private Contents(ByteBuffer buffer) {
+			buffer.position(16);
+			int n = buffer.getInt(), m = buffer.getInt(), labelCount = buffer.getInt();
+			int stringCount = buffer.getInt(), stringBytes = buffer.getInt();
+
+			int[] stringOffsets = ints(buffer, stringCount + 1);
+			int stringStart = buffer.position();
+			strings = new String[stringCount];
+			for (int i = 0; i < stringCount; i++) {
+				byte[] bytes = new byte[stringOffsets[i + 1] - stringOffsets[i]];
+				buffer.position(stringStart + stringOffsets[i]);
+				buffer.get(bytes);
+				strings[i] = new String(bytes, UTF8);
+			}
+			buffer.position(stringStart + stringBytes);
+
+			xs = doubles(buffer, n);
+			ys = doubles(buffer, n);
+			shortNames = ints(buffer, n);
+			longNames = ints(buffer, n);
+			offsets = ints(buffer, n + 1);
+			targets = ints(buffer, m);
+			weights = doubles(buffer, m);
+			labelXs = doubles(buffer, labelCount);
+			labelYs = doubles(buffer, labelCount);
+			labelShort = ints(buffer, labelCount);
+			labelLong = ints(buffer, labelCount);
+		}
+
+		// creates the graph described by the arrays
+		private MapGraph toGraph() {
+			// add nodes in id order, then every edge between them
+			MapGraph graph = new MapGraph();
+			Node<Location>[] nodes = nodes();
+			for (Node<Location> node: nodes)
+				graph.add(node);
+			for (int i = 0; i < nodes.length; i++) {
+				for (int e = offsets[i]; e < offsets[i + 1]; e++)
+					graph.addEdge(nodes[i], nodes[targets[e]], weights[e]);
+			}
+			for (Location label: labels())
+				graph.addLabel(label);
+			graph.publish();
+			return graph;
+		}
+
+		// creates a snapshot of the map described by the arrays, routing with routing
+		private MapSnapshot toSnapshot(RoutingMode routing) {
+			Node<Location>[] nodes = nodes();
+			CompactGraph graph = new CompactGraph(nodes, xs, ys, offsets, targets, weights, 0);
+			// entrances and labels are sorted as a MapGraph keeps them, so lists match
+			Set<Node<Location>> entrances = new TreeSet<Node<Location>>();
+			for (Node<Location> node: nodes) {
+				if (!node.getLocation().getLongName().startsWith("Path"))
+					entrances.add(node);
+			}
+			return new MapSnapshot(graph, null, new ArrayList<Node<Location>>(entrances),
+					new ArrayList<Location>(new TreeSet<Location>(labels())), routing);
+		}
+
+		// creates a node for each id, without edges. Path nodes are given fresh names
+		@SuppressWarnings("unchecked")
+		private Node<Location>[] nodes() {
+			Node<Location>[] nodes = (Node<Location>[]) new Node<?>[xs.length];
+			for (int i = 0; i < nodes.length; i++) {
+				if (shortNames[i] < 0)
+					nodes[i] = new Node<Location>(xs[i], ys[i]);
+				else
+					nodes[i] = new Node<Location>(new Location(strings[shortNames[i]],
+							strings[longNames[i]], xs[i], ys[i]));
+			}
+			return nodes;
+		}
+
+		// creates the labels, in file order
+		private List<Location> labels() {
+			List<Location> labels = new ArrayList<Location>(labelXs.length);
+			for (int i = 0; i < labelXs.length; i++)
+				labels.add(new Location(strings[labelShort[i]], strings[labelLong[i]],
+						labelXs[i], labelYs[i]));
+			return labels;
+		}
+	}
+}
@@ -0,0 +1,638 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/*
+ * Abstraction function: ContractionHierarchy is a CompactGraph whose nodes have been contracted
+ * one at a time in rank order, adding shortcut edges so that shortest path lengths between the
+ * remaining nodes are preserved. Edges from a node to higher ranked nodes form the upward
+ * graph, stored in up* arrays by source. Edges into a node from higher ranked nodes form the
+ * downward graph, stored in down* arrays by target. A shortcut's middle is the contracted node
+ * it bypasses; original edges have a middle of -1
+ *
+ * Representation invariant: rank is a permutation of 0 .. size - 1. Every edge in the upward
+ * graph leads to a higher ranked node and every edge in the downward graph leaves a higher
+ * ranked node. Each pair of nodes is joined by at most one edge in each direction
+ */
+public class ContractionHierarchy {
+
+	private static final int MAGIC = 0x44554243;  // "DUBC"
+	private static final int FORMAT = 1;
+	private static final String PATH = "src/data/", HIERARCHY = "_hierarchy.bin";
+	private static final int WITNESS_LIMIT = 500;  // max nodes settled per witness search
+
+	private final CompactGraph graph;
+	private final int[] rank;
+	private final int[] upOffsets, upTargets, upMiddles;
+	private final double[] upWeights;
+	private final int[] downOffsets, downSources, downMiddles;
+	private final double[] downWeights;
+	private final boolean DEBUG = true;
+
+	/**
+	 * Builds a contraction hierarchy over graph, contracting nodes in order of how few edges
+	 * their removal adds
+	 * @param graph: The graph to be preprocessed
+	 * @requires graph is not null
+	 */
+	public ContractionHierarchy(CompactGraph graph) {
+		this.graph = graph;
+		Contractor contractor = new Contractor(graph);
+		contractor.contractAll();
+
+		int n = graph.size();
+		rank = contractor.rank;
+		upOffsets = new int[n + 1];
+		downOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			upOffsets[v + 1] = upOffsets[v] + contractor.upward[v].size;
+			downOffsets[v + 1] = downOffsets[v] + contractor.downward[v].size;
+		}
+		upTargets = new int[upOffsets[n]];
+		upMiddles = new int[upOffsets[n]];
+		upWeights = new double[upOffsets[n]];
+		downSources = new int[downOffsets[n]];
+		downMiddles = new int[downOffsets[n]];
+		downWeights = new double[downOffsets[n]];
+		for (int v = 0; v < n; v++) {
+			contractor.upward[v].copyTo(upTargets, upWeights, upMiddles, upOffsets[v]);
+			contractor.downward[v].copyTo(downSources, downWeights, downMiddles, downOffsets[v]);
+		}
+		checkRep();
+	}
+
+	// creates a hierarchy over graph from arrays read from a file
+	private ContractionHierarchy(CompactGraph graph, int[] rank, int[] upOffsets,
+			int[] upTargets, double[] upWeights, int[] upMiddles, int[] downOffsets,
+			int[] downSources, double[] downWeights, int[] downMiddles) {
+		this.graph = graph;
+		this.rank = rank;
+		this.upOffsets = upOffsets;
+		this.upTargets = upTargets;
+		this.upWeights = upWeights;
+		this.upMiddles = upMiddles;
+		this.downOffsets = downOffsets;
+		this.downSources = downSources;
+		this.downWeights = downWeights;
+		this.downMiddles = downMiddles;
+		checkRep();
+	}
+
+	/**
+	 * Returns the hierarchy saved for the map files named filename if it still matches
+	 * graph, otherwise builds a new one and saves it next to the map's data files
+	 * @param filename: The name of the map files, as given to FileParser
+	 * @param graph: The graph the hierarchy must describe
+	 * @return a hierarchy over graph
+	 */
+	public static ContractionHierarchy loadOrBuild(String filename, CompactGraph graph) {
+		String file = PATH + filename + HIERARCHY;
+		try {
+			ContractionHierarchy saved = load(file, graph);
+			if (saved != null)
+				return saved;
+		} catch (IOException e) {
+			System.err.println("could not read " + file + ", rebuilding: " + e);
+		}
+
+		ContractionHierarchy result = new ContractionHierarchy(graph);
+		try {
+			result.save(file);
+		} catch (IOException e) {
+			System.err.println("could not write " + file + ": " + e);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a hierarchy written by save, returning null if the file does not exist or was
+	 * built from a graph other than graph
+	 * @param file: The path of the hierarchy file
+	 * @param graph: The graph the hierarchy must describe
+	 * @return the saved hierarchy, or null if it is missing or out of date
+	 * @throws IOException Indicates the file could not be read or is malformed, including
+	 * 		   counts or offsets that do not fit the file or the graph
+	 */
+	public static ContractionHierarchy load(String file, CompactGraph graph) throws IOException {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(Paths.get(file));
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+		// the whole file is in memory, so available() is exactly the number of bytes left
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT)
+				throw new IOException("not a hierarchy file");
+			int n = in.readInt();
+			if (n != graph.size() || in.readInt() != graph.edgeCount() ||
+				in.readLong() != graph.fingerprint())
+				return null;  // saved for a different version of the map
+
+			int[] rank = readInts(in, n);
+			int[] upOffsets = readInts(in, n + 1);
+			int up = upOffsets[n];
+			int[] upTargets = readInts(in, up);
+			double[] upWeights = readDoubles(in, up);
+			int[] upMiddles = readInts(in, up);
+			int[] downOffsets = readInts(in, n + 1);
+			int down = downOffsets[n];
+			int[] downSources = readInts(in, down);
+			double[] downWeights = readDoubles(in, down);
+			int[] downMiddles = readInts(in, down);
+			checkRanks(rank);
+			checkRows(upOffsets, upTargets, upMiddles, rank);
+			checkRows(downOffsets, downSources, downMiddles, rank);
+			return new ContractionHierarchy(graph, rank, upOffsets, upTargets, upWeights,
+					upMiddles, downOffsets, downSources, downWeights, downMiddles);
+		} catch (EOFException e) {
+			throw new IOException("truncated hierarchy file", e);
+		} catch (RuntimeException e) {
+			throw new IOException("malformed hierarchy file: " + e, e);
+		}
+	}
+
+	/**
+	 * Writes the hierarchy to file along with a fingerprint of the graph it was built from,
+	 * replacing the file atomically
+	 * @param file: The path of the file to be written
+	 * @throws IOException Indicates the file could not be written, in which case it is
+	 * 		   unchanged
+	 */
+	public void save(String file) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+			out.writeInt(graph.size());
+			out.writeInt(graph.edgeCount());
+			out.writeLong(graph.fingerprint());
+			writeInts(out, rank);
+			writeInts(out, upOffsets);
+			writeInts(out, upTargets);
+			writeDoubles(out, upWeights);
+			writeInts(out, upMiddles);
+			writeInts(out, downOffsets);
+			writeInts(out, downSources);
+			writeDoubles(out, downWeights);
+			writeInts(out, downMiddles);
+		} finally {
+			out.close();
+		}
+		FileWriter.replace(file, ByteBuffer.wrap(bytes.toByteArray()));
+	}
+
+	/**
+	 * Returns the graph this hierarchy was built from
+	 * @return the original graph
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the number of shortcut edges added by contraction
+	 * @return the shortcut count
+	 */
+	public int shortcutCount() {
+		int result = 0;
+		for (int m: upMiddles)
+			if (m >= 0)
+				result++;
+		for (int m: downMiddles)
+			if (m >= 0)
+				result++;
+		return result;
+	}
+
+	/**
+	 * Returns the index of the first upward edge leaving the node with the given id
+	 * @param id: A valid node id
+	 * @return the first upward edge index of id's row
+	 */
+	public int firstUpEdge(int id) {
+		return upOffsets[id];
+	}
+
+	/**
+	 * Returns the index one past the last upward edge leaving the node with the given id
+	 * @param id: A valid node id
+	 * @return the end upward edge index of id's row
+	 */
+	public int endUpEdge(int id) {
+		return upOffsets[id + 1];
+	}
+
+	/**
+	 * Returns the higher ranked node an upward edge leads to
+	 * @param edge: A valid upward edge index
+	 * @return the edge's child id
+	 */
+	public int getUpTarget(int edge) {
+		return upTargets[edge];
+	}
+
+	/**
+	 * Returns the length of an upward edge
+	 * @param edge: A valid upward edge index
+	 * @return the edge's length
+	 */
+	public double getUpWeight(int edge) {
+		return upWeights[edge];
+	}
+
+	/**
+	 * Returns the index of the first downward edge entering the node with the given id
+	 * @param id: A valid node id
+	 * @return the first downward edge index of id's row
+	 */
+	public int firstDownEdge(int id) {
+		return downOffsets[id];
+	}
+
+	/**
+	 * Returns the index one past the last downward edge entering the node with the given id
+	 * @param id: A valid node id
+	 * @return the end downward edge index of id's row
+	 */
+	public int endDownEdge(int id) {
+		return downOffsets[id + 1];
+	}
+
+	/**
+	 * Returns the higher ranked node a downward edge leaves from
+	 * @param edge: A valid downward edge index
+	 * @return the edge's parent id
+	 */
+	public int getDownSource(int edge) {
+		return downSources[edge];
+	}
+
+	/**
+	 * Returns the length of a downward edge
+	 * @param edge: A valid downward edge index
+	 * @return the edge's length
+	 */
+	public double getDownWeight(int edge) {
+		return downWeights[edge];
+	}
+
+	/**
+	 * Expands a route through the hierarchy, which may use shortcuts, into the route through
+	 * the original graph that each shortcut stands for
+	 * @param route: Node ids of a path in the hierarchy, route[0] being the start
+	 * @param length: The number of ids in route to use
+	 * @return node ids of the same path in the original graph
+	 */
+	public int[] unpack(int[] route, int length) {
+		int[] result = new int[Math.max(2 * length, 16)];
+		int size = 0;
+		if (length > 0)
+			result[size++] = route[0];
+
+		// expand each hop depth first, keeping the hops still to be expanded on a stack
+		int[] stack = new int[16];
+		for (int i = 1; i < length; i++) {
+			int top = 0;
+			stack[top++] = route[i];
+			int from = route[i - 1];
+			while (top > 0) {
+				int to = stack[top - 1];
+				int middle = middle(from, to);
+				if (middle < 0) {
+					// an original edge; emit it and move on to the next pending hop
+					if (size == result.length)
+						result = Arrays.copyOf(result, 2 * size);
+					result[size++] = to;
+					from = to;
+					top--;
+				} else {
+					if (top == stack.length)
+						stack = Arrays.copyOf(stack, 2 * top);
+					stack[top++] = middle;
+				}
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	// returns the node bypassed by the edge from one node to another, -1 if it is original
+	private int middle(int from, int to) {
+		if (rank[from] < rank[to]) {
+			for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++)
+				if (upTargets[e] == to)
+					return upMiddles[e];
+		} else {
+			for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++)
+				if (downSources[e] == from)
+					return downMiddles[e];
+		}
+		throw new IllegalStateException("no hierarchy edge from " + from + " to " + to);
+	}
+
+	// reads count big-endian ints from in, which must hold at least that many
+	private static int[] readInts(DataInputStream in, int count) throws IOException {
+		if (count < 0 || count > in.available() / 4)
+			throw new IOException("bad count " + count + " in hierarchy file");
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++)
+			result[i] = in.readInt();
+		return result;
+	}
+
+	// reads count big-endian doubles from in, which must hold at least that many
+	private static double[] readDoubles(DataInputStream in, int count) throws IOException {
+		if (count < 0 || count > in.available() / 8)
+			throw new IOException("bad count " + count + " in hierarchy file");
+		double[] result = new double[count];
+		for (int i = 0; i < count; i++)
+			result[i] = in.readDouble();
+		return result;
+	}
+
+	// throws IOException unless rank is a permutation of 0 .. rank.length - 1
+	private static void checkRanks(int[] rank) throws IOException {
+		boolean[] seen = new boolean[rank.length];
+		for (int r: rank) {
+			if (r < 0 || r >= rank.length || seen[r])
+				throw new IOException("bad rank " + r + " in hierarchy file");
+			seen[r] = true;
+		}
+	}
+
+	// throws IOException unless offsets rise from 0 to the length of ends, every edge leads
+	// to a higher ranked node, and every middle is a node or -1
+	private static void checkRows(int[] offsets, int[] ends, int[] middles, int[] rank)
+			throws IOException {
+		int n = rank.length;
+		if (offsets[0] != 0)
+			throw new IOException("bad offsets in hierarchy file");
+		for (int v = 0; v < n; v++) {
+			if (offsets[v + 1] < offsets[v])
+				throw new IOException("bad offsets in hierarchy file");
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				if (ends[e] < 0 || ends[e] >= n || rank[ends[e]] <= rank[v] ||
+					middles[e] < -1 || middles[e] >= n)
+					throw new IOException("bad edge " + e + " in hierarchy file");
+			}
+		}
+	}
+
+	// writes every entry of values to out
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int v: values)
+			out.writeInt(v);
+	}
+
+	// writes every entry of values to out
+	private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+		for (double v: values)
+			out.writeDouble(v);
+	}
+
+	/**
+	 * Checks that the representation invariant holds
+	 */
+	private void checkRep() {
+		if (DEBUG) {
+			assert (rank.length == graph.size());
+			for (int v = 0; v < rank.length; v++) {
+				for (int e = upOffsets[v]; e < upOffsets[v + 1]; e++)
+					assert (rank[upTargets[e]] > rank[v]);
+				for (int e = downOffsets[v]; e < downOffsets[v + 1]; e++)
+					assert (rank[downSources[e]] > rank[v]);
+			}
+		}
+	}
+
+	/*
+	 * EdgeList is a growable list of edges to or from one node, each with a length and the
+	 * node a shortcut bypasses
+	 */
+	private static class EdgeList {
+		private int[] nodes = new int[4];
+		private double[] weights = new double[4];
+		private int[] middles = new int[4];
+		private int size = 0;
+
+		// adds an edge to node, or shortens the existing one if weight is smaller
+		private void addOrShorten(int node, double weight, int middle) {
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == node) {
+					if (weight < weights[i]) {
+						weights[i] = weight;
+						middles[i] = middle;
+					}
+					return;
+				}
+			}
+			if (size == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * size);
+				weights = Arrays.copyOf(weights, 2 * size);
+				middles = Arrays.copyOf(middles, 2 * size);
+			}
+			nodes[size] = node;
+			weights[size] = weight;
+			middles[size] = middle;
+			size++;
+		}
+
+		// removes the edge to node, if any
+		private void remove(int node) {
+			for (int i = 0; i < size; i++) {
+				if (nodes[i] == node) {
+					size--;
+					nodes[i] = nodes[size];
+					weights[i] = weights[size];
+					middles[i] = middles[size];
+					return;
+				}
+			}
+		}
+
+		// returns a copy of this list that no longer changes
+		private EdgeList copy() {
+			EdgeList result = new EdgeList();
+			result.nodes = Arrays.copyOf(nodes, size);
+			result.weights = Arrays.copyOf(weights, size);
+			result.middles = Arrays.copyOf(middles, size);
+			result.size = size;
+			return result;
+		}
+
+		// copies the list into the given arrays starting at index at
+		private void copyTo(int[] toNodes, double[] toWeights, int[] toMiddles, int at) {
+			System.arraycopy(nodes, 0, toNodes, at, size);
+			System.arraycopy(weights, 0, toWeights, at, size);
+			System.arraycopy(middles, 0, toMiddles, at, size);
+		}
+	}
+
+	/*
+	 * Contractor removes nodes from a working copy of a graph in order of priority, adding a
+	 * shortcut between each pair of neighbours whose shortest connection ran through the
+	 * removed node
+	 */
+	private static class Contractor {
+		private final EdgeList[] out, in;  // edges between nodes not yet contracted
+		private final EdgeList[] upward, downward;  // each node's edges when it was contracted
+		private final int[] rank;
+		private final int[] contractedNeighbours;
+		private final IndexedHeap order;
+
+		// witness search workspace
+		private final double[] distance;
+		private final int[] touched;
+		private int touchedCount;
+		private final IndexedHeap witnessHeap;
+
+		private Contractor(CompactGraph graph) {
+			int n = graph.size();
+			out = new EdgeList[n];
+			in = new EdgeList[n];
+			upward = new EdgeList[n];
+			downward = new EdgeList[n];
+			for (int v = 0; v < n; v++) {
+				out[v] = new EdgeList();
+				in[v] = new EdgeList();
+			}
+			for (int v = 0; v < n; v++) {
+				for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+					int t = graph.getTarget(e);
+					if (t == v)
+						continue;  // self loops never lie on a shortest path
+					out[v].addOrShorten(t, graph.getWeight(e), -1);
+					in[t].addOrShorten(v, graph.getWeight(e), -1);
+				}
+			}
+			rank = new int[n];
+			contractedNeighbours = new int[n];
+			order = new IndexedHeap(n);
+			distance = new double[n];
+			Arrays.fill(distance, Double.POSITIVE_INFINITY);
+			touched = new int[n];
+			touchedCount = 0;
+			witnessHeap = new IndexedHeap(n);
+		}
+
+		// contracts every node, lowest priority first, re-checking each priority lazily
+		private void contractAll() {
+			for (int v = 0; v < rank.length; v++)
+				order.offer(v, priority(v));
+
+			int next = 0;
+			while (!order.isEmpty()) {
+				int v = order.poll();
+				double p = priority(v);
+				if (!order.isEmpty() && p > order.peekKey()) {
+					order.offer(v, p);  // priority grew since it was queued; try again later
+					continue;
+				}
+				rank[v] = next++;
+				contract(v);
+
+				// neighbours' priorities change once v is gone
+				for (int i = 0; i < upward[v].size; i++)
+					refresh(upward[v].nodes[i]);
+				for (int i = 0; i < downward[v].size; i++)
+					refresh(downward[v].nodes[i]);
+			}
+		}
+
+		// updates the queued priority of an uncontracted neighbour of a contracted node
+		private void refresh(int neighbour) {
+			contractedNeighbours[neighbour]++;
+			order.update(neighbour, priority(neighbour));
+		}
+
+		// returns how desirable it is to contract v next, lower first: the number of
+		// shortcuts it needs minus the edges it removes, plus its contracted neighbours
+		private double priority(int v) {
+			int shortcuts = shortcuts(v, false);
+			return shortcuts - out[v].size - in[v].size + contractedNeighbours[v];
+		}
+
+		// removes v from the working graph, recording its edges and adding shortcuts
+		private void contract(int v) {
+			upward[v] = out[v].copy();
+			downward[v] = in[v].copy();
+			shortcuts(v, true);
+			for (int i = 0; i < out[v].size; i++)
+				in[out[v].nodes[i]].remove(v);
+			for (int i = 0; i < in[v].size; i++)
+				out[in[v].nodes[i]].remove(v);
+		}
+
+		// returns the number of shortcuts contracting v requires, adding them if add is true
+		private int shortcuts(int v, boolean add) {
+			EdgeList from = in[v], to = out[v];
+			double maxOut = 0;
+			for (int j = 0; j < to.size; j++)
+				maxOut = Math.max(maxOut, to.weights[j]);
+
+			int result = 0;
+			for (int i = 0; i < from.size; i++) {
+				int u = from.nodes[i];
+				double viaV = from.weights[i];
+				witnessSearch(u, v, viaV + maxOut);
+				for (int j = 0; j < to.size; j++) {
+					int x = to.nodes[j];
+					double length = viaV + to.weights[j];
+					if (x == u || distance[x] <= length)
+						continue;  // a path avoiding v is at least as short
+					result++;
+					if (add) {
+						out[u].addOrShorten(x, length, v);
+						in[x].addOrShorten(u, length, v);
+					}
+				}
+			}
+			return result;
+		}
+
+		// runs a bounded Dijkstra from source that never passes through skip, leaving
+		// distances in distance. Nodes further than limit may be left unreached
+		private void witnessSearch(int source, int skip, double limit) {
+			for (int i = 0; i < touchedCount; i++)
+				distance[touched[i]] = Double.POSITIVE_INFINITY;
+			touchedCount = 0;
+			distance[source] = 0.0;
+			touched[touchedCount++] = source;
+			witnessHeap.offer(source, 0.0);
+
+			int settled = 0;
+			while (!witnessHeap.isEmpty() && settled < WITNESS_LIMIT) {
+				if (witnessHeap.peekKey() > limit)
+					break;
+				int node = witnessHeap.poll();
+				settled++;
+				EdgeList edges = out[node];
+				for (int i = 0; i < edges.size; i++) {
+					int next = edges.nodes[i];
+					if (next == skip)
+						continue;
+					double cost = distance[node] + edges.weights[i];
+					if (cost < distance[next]) {
+						if (distance[next] == Double.POSITIVE_INFINITY)
+							touched[touchedCount++] = next;
+						distance[next] = cost;
+						witnessHeap.offer(next, cost);
+					}
+				}
+			}
+			witnessHeap.clear();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package model;
+
+/*
+ * Abstraction function: CoordinateIndex maps integer pixel coordinates to the first node added
+ * at them. A node at (x, y) is stored under key((int) x, (int) y), matching the truncated
+ * comparison MapGraph.getNode(double, double) has always used. Entries live in an open
+ * addressing table with linear probing: slot i is empty if values[i] is null, otherwise
+ * keys[i] holds the key of values[i]
+ *
+ * Representation invariant: keys and values have the same power of two length, greater than
+ * size, and at most three quarters of their slots are in use. No key appears in two slots
+ */
+public class CoordinateIndex {
+
+	private long[] keys;
+	private Node<Location>[] values;
+	private int size;
+
+	/**
+	 * Creates an empty index
+	 */
+	public CoordinateIndex() {
+		allocate(16);
+		size = 0;
+	}
+
+	/**
+	 * Returns the number of coordinates in the index
+	 * @return the entry count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds node under its truncated coordinates, unless a node is already stored there
+	 * @param node: The node to be added
+	 * @requires node is not null
+	 * @modifies this
+	 */
+	public void add(Node<Location> node) {
+		long key = key(node.getLocation().getX(), node.getLocation().getY());
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		while (values[i] != null) {
+			if (keys[i] == key)
+				return;  // keep the first node added at these coordinates
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = node;
+		size++;
+		if (4 * size > 3 * keys.length)
+			grow();
+	}
+
+	/**
+	 * Returns the node whose coordinates truncate to the same integers as x and y, or null if
+	 * none exists
+	 * @param x: target x coordinate
+	 * @param y: target y coordinate
+	 * @return The node located at x, y
+	 */
+	public Node<Location> get(double x, double y) {
+		long key = key(x, y);
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return values[i];
+		}
+		return null;
+	}
+
+	// doubles the table size and re-inserts every entry
+	private void grow() {
+		long[] oldKeys = keys;
+		Node<Location>[] oldValues = values;
+		allocate(2 * oldKeys.length);
+		int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldValues[j] == null)
+				continue;
+			int i = slot(oldKeys[j], mask);
+			while (values[i] != null)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+	// creates empty tables with capacity slots
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = (Node<Location>[]) new Node<?>[capacity];
+	}
+
+	// packs truncated coordinates into one key
+	private static long key(double x, double y) {
+		return ((long) (int) x << 32) | ((int) y & 0xffffffffL);
+	}
+
+	// returns the first slot to probe for key, mixing its bits so nearby pixels spread out
+	private static int slot(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
@@ -12,7 +12,7 @@ import java.util.List;
  */
 public class DijkPath implements Comparable<DijkPath> {
 	
-	private final Double cost;
+	private final double cost;
 	private final Node<Location> dest;
 	private final List<Edge<Location>> path;
 	
@@ -25,7 +25,7 @@ public class DijkPath implements Comparable<DijkPath> {
 	 * @requires cost, node, and path are not null. dest represents the last node in  path
 	 * and cost represents the sum of edge labels in path
 	 */
-	public DijkPath (Double cost, Node<Location> dest, List<Edge<Location>> path) {
+	public DijkPath (double cost, Node<Location> dest, List<Edge<Location>> path) {
 		this.path = path;
 		this.cost = cost;
 		this.dest = dest;
@@ -44,10 +44,10 @@ public class DijkPath implements Comparable<DijkPath> {
 	/**
 	 * Compares the cost of other to the cost of this
 	 * @param other The DijkPath to be compared
-	 * @return an int representation of the comparison. 
+	 * @return a negative int if this costs less than other, positive if more, 0 if equal
 	 */
 	public int compareTo(DijkPath other) {
-		return (int) (100000 * (this.cost - other.cost)); //lower values are "larger"
+		return Double.compare(this.cost, other.cost); //lower costs are removed first
 	}
 	
 	/**
@@ -70,7 +70,7 @@ public class DijkPath implements Comparable<DijkPath> {
 	 * Returns the cost
 	 * @return cost The cost of traveling path
 	 */
-	public Double getCost() {
+	public double getCost() {
 		return cost;
 	}
 }
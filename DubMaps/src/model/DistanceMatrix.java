@@ -0,0 +1,317 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+/*
+ * DistanceMatrix holds the shortest route length between every pair of building entrances in
+ * a map, found with one search per entrance instead of one per pair. The searches run in
+ * parallel on a ForkJoinPool, each writing its own row of one flat array. Optionally the
+ * shortest path tree of each search is kept as well, so any route can be rebuilt without
+ * searching again. A matrix can be written to and read from a binary file laid out, big
+ * endian, as:
+ *
+ *   header:    int MAGIC, int FORMAT, long checksum, int size
+ *   buildings: for each row, double x, double y, short nameBytes, UTF-8 bytes[nameBytes]
+ *   distances: double distances[size * size], row by row
+ *
+ * The checksum is the CRC32 of everything after it. Unreachable pairs are infinite
+ *
+ * Abstraction function: entry (i, j) of the matrix, for 0 <= i, j < size, is the length of the
+ * shortest route from buildings[i] to buildings[j], stored at distances[i * size + j]. If
+ * trees is not null, trees[i * graph.size() + v] is the node id before v on the shortest route
+ * from buildings[i] to node id v of graph, or -1
+ *
+ * Representation invariant: distances.length == size * size, every diagonal entry is 0, and
+ * if trees is not null then graph is not null and trees.length == size * graph.size()
+ */
+public class DistanceMatrix {
+	private static final boolean DEBUG = true;
+	private static final int MAGIC = 0x44554244;  // "DUBD"
+	private static final int FORMAT = 1;
+	private static final int HEADER = 20;  // bytes before the building list
+	private static final int ROWS_PER_TASK = 4;  // rows searched by one task before splitting
+	private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;  // longest array every VM allows
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private final List<Location> buildings;
+	private final int size;
+	private final double[] distances;
+	private final CompactGraph graph;  // the graph searched, or null if read from a file
+	private final int[] ids;  // the id in graph of each building, or -1
+	private final int[] trees;  // each row's shortest path tree, or null if not kept
+
+	/**
+	 * Computes the distance between every pair of building entrances in graph, using the
+	 * common ForkJoinPool
+	 * @param graph: The map to be measured
+	 * @param keepTrees: Whether to keep each search's shortest path tree so getPath can be
+	 * 		  used. This takes four bytes per building for every node in the graph
+	 * @throws IllegalArgumentException if the matrix, or the trees if kept, have too many
+	 * 		   entries to fit in an array
+	 */
+	public DistanceMatrix(MapGraph graph, boolean keepTrees) {
+		this(graph, keepTrees, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Computes the distance between every pair of building entrances in graph
+	 * @param graph: The map to be measured
+	 * @param keepTrees: Whether to keep each search's shortest path tree so getPath can be
+	 * 		  used. This takes four bytes per building for every node in the graph
+	 * @param pool: The pool the searches are run on
+	 * @throws IllegalArgumentException if the matrix, or the trees if kept, have too many
+	 * 		   entries to fit in an array
+	 */
+	public DistanceMatrix(MapGraph graph, boolean keepTrees, ForkJoinPool pool) {
+		buildings = graph.getBuildings();
+		size = buildings.size();
+		this.graph = graph.getCompactGraph();
+		ids = new int[size];
+		for (int i = 0; i < size; i++) {
+			Location b = buildings.get(i);
+			ids[i] = this.graph.getId(graph.getNode(b.getX(), b.getY()));
+		}
+		distances = new double[entries(size, size, "distances")];
+		trees = keepTrees ? new int[entries(size, this.graph.size(), "shortest path trees")]
+				: null;
+		pool.invoke(new Rows(0, size));
+		checkRep();
+	}
+
+	// constructs a matrix read from a file, which has no graph or trees
+	private DistanceMatrix(List<Location> buildings, double[] distances) {
+		this.buildings = buildings;
+		this.distances = distances;
+		size = buildings.size();
+		graph = null;
+		ids = null;
+		trees = null;
+		checkRep();
+	}
+
+	/**
+	 * Returns the number of rows and columns in the matrix
+	 * @return the number of building entrances
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the building entrance each row and column stands for
+	 * @return the entrances, in row order
+	 */
+	public List<Location> getBuildings() {
+		return new ArrayList<Location>(buildings);
+	}
+
+	/**
+	 * Returns the length of the shortest route between two building entrances
+	 * @param from: The row of the entrance to start from
+	 * @param to: The column of the entrance to reach
+	 * @return the route's length, or Double.POSITIVE_INFINITY if there is no route
+	 * @requires 0 <= from, to < size()
+	 */
+	public double get(int from, int to) {
+		return distances[from * size + to];
+	}
+
+	/**
+	 * Returns a copy of the whole matrix as one flat array
+	 * @return the distances, row by row, so (from, to) is at index from * size() + to
+	 */
+	public double[] toArray() {
+		return Arrays.copyOf(distances, distances.length);
+	}
+
+	/**
+	 * Returns whether the matrix kept the shortest path trees needed by getPath
+	 * @return true if routes can be rebuilt
+	 */
+	public boolean hasPaths() {
+		return trees != null;
+	}
+
+	/**
+	 * Returns the shortest route between two building entrances, rebuilt from the shortest
+	 * path tree of the from row
+	 * @param from: The row of the entrance to start from
+	 * @param to: The column of the entrance to reach
+	 * @return a list of edges leading from one entrance to the other, null if none
+	 * @throws IllegalStateException if the matrix was made without its trees
+	 * @requires 0 <= from, to < size()
+	 */
+	public List<Edge<Location>> getPath(int from, int to) {
+		if (trees == null)
+			throw new IllegalStateException("shortest path trees were not kept");
+		if (ids[from] < 0 || ids[to] < 0 || get(from, to) == Double.POSITIVE_INFINITY)
+			return null;
+		int base = from * graph.size(), length = 0;
+		for (int n = ids[to]; n != -1; n = trees[base + n])
+			length++;
+		int[] route = new int[length];
+		for (int n = ids[to]; n != -1; n = trees[base + n])
+			route[--length] = n;
+		return graph.toEdges(route, route.length);
+	}
+
+	/**
+	 * Writes the matrix and the location and name of each building to file, replacing it
+	 * atomically
+	 * @param file: The path of the file to write
+	 * @throws IOException Indicates the file could not be written, in which case it is
+	 * 		   unchanged
+	 */
+	public void write(String file) throws IOException {
+		long length = HEADER + 8L * size * size;
+		byte[][] names = new byte[size][];
+		for (int i = 0; i < size; i++) {
+			names[i] = buildings.get(i).getName().getBytes(UTF8);
+			if (names[i].length > Short.MAX_VALUE)
+				names[i] = Arrays.copyOf(names[i], Short.MAX_VALUE);
+			length += 18 + names[i].length;
+		}
+		if (length > Integer.MAX_VALUE)
+			throw new IOException("matrix too large to write: " + length + " bytes");
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		buffer.putInt(MAGIC).putInt(FORMAT).putLong(0L).putInt(size);  // checksum is last
+		for (int i = 0; i < size; i++) {
+			buffer.putDouble(buildings.get(i).getX()).putDouble(buildings.get(i).getY());
+			buffer.putShort((short) names[i].length).put(names[i]);
+		}
+		buffer.asDoubleBuffer().put(distances);
+		buffer.putLong(8, checksum(buffer, 16, buffer.capacity()));
+		buffer.rewind();
+		FileWriter.replace(file, buffer);
+	}
+
+	/**
+	 * Reads a matrix written by write. Its buildings carry their abbreviated names only, and
+	 * it has no trees
+	 * @param file: The path of a file written by write
+	 * @return the matrix stored in file
+	 * @throws IOException Indicates the file could not be read, is of an unknown format, or
+	 * fails its checksum
+	 */
+	public static DistanceMatrix read(String file) throws IOException {
+		Path path = Paths.get(file);
+		if (Files.size(path) > Integer.MAX_VALUE)
+			throw new IOException("corrupt matrix file " + file + ": bad length");
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));  // not mapped: no open file
+		if (buffer.capacity() < HEADER)
+			throw new IOException("corrupt matrix file " + file + ": bad length");
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		if (buffer.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a distance matrix");
+		if (buffer.getInt(4) != FORMAT)
+			throw new IOException(file + " has unsupported format " + buffer.getInt(4));
+		if (buffer.getLong(8) != checksum(buffer, 16, buffer.capacity()))
+			throw new IOException("corrupt matrix file " + file + ": checksum mismatch");
+
+		try {
+			buffer.position(16);
+			int size = buffer.getInt();
+			if (size < 0)
+				throw new IOException("corrupt matrix file " + file + ": negative size " + size);
+			int entries = entries(size, size, "distances");
+			if (8L * entries > buffer.remaining())
+				throw new IOException("corrupt matrix file " + file + ": too short for " + size
+						+ " buildings");
+			double[] distances = new double[entries];
+			List<Location> buildings = new ArrayList<Location>(size);
+			for (int i = 0; i < size; i++) {
+				double x = buffer.getDouble(), y = buffer.getDouble();
+				byte[] name = new byte[buffer.getShort()];
+				buffer.get(name);
+				String s = new String(name, UTF8);
+				buildings.add(new Location(s, s, x, y));
+			}
+			buffer.asDoubleBuffer().get(distances);
+			return new DistanceMatrix(buildings, distances);
+		} catch (RuntimeException e) {
+			throw new IOException("corrupt matrix file " + file + ": " + e, e);
+		}
+	}
+
+	// returns rows * columns, the length of an array of that many entries, throwing
+	// IllegalArgumentException naming what the entries are if no array can be that long
+	private static int entries(int rows, int columns, String what) {
+		long entries = Math.multiplyExact((long) rows, (long) columns);
+		if (entries > MAX_ARRAY)
+			throw new IllegalArgumentException(rows + " by " + columns + " " + what + " is "
+					+ entries + " entries, more than an array can hold");
+		return (int) entries;
+	}
+
+	// returns the CRC32 of buffer's bytes from start up to end, leaving its position unchanged
+	private static long checksum(ByteBuffer buffer, int start, int end) {
+		ByteBuffer view = buffer.duplicate();
+		view.position(start);
+		view.limit(end);
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[8192];
+		while (view.hasRemaining()) {
+			int n = Math.min(chunk.length, view.remaining());
+			view.get(chunk, 0, n);
+			crc.update(chunk, 0, n);
+		}
+		return crc.getValue();
+	}
+
+	// verifies the representation invariant
+	private void checkRep() {
+		if (DEBUG) {
+			assert (distances.length == size * size);
+			for (int i = 0; i < size; i++)
+				assert (distances[i * size + i] == 0.0 || ids == null || ids[i] < 0);
+			assert (trees == null || (graph != null && trees.length == size * graph.size()));
+		}
+	}
+
+	/*
+	 * Rows searches from the buildings of rows from up to to, splitting the range among the
+	 * pool's threads. Each search uses its thread's PathFinder and writes only its own row
+	 */
+	private class Rows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+
+		private Rows(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from > ROWS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Rows(from, middle), new Rows(middle, to));
+				return;
+			}
+			PathFinder finder = PathFinder.get();
+			for (int i = from; i < to; i++) {
+				if (ids[i] < 0) {
+					// a building off every path reaches only itself
+					Arrays.fill(distances, i * size, (i + 1) * size, Double.POSITIVE_INFINITY);
+					distances[i * size + i] = 0.0;
+					if (trees != null)
+						Arrays.fill(trees, i * graph.size(), (i + 1) * graph.size(), -1);
+					continue;
+				}
+				finder.searchAll(graph, ids[i], ids, distances, i * size, trees,
+						i * graph.size());
+			}
+		}
+	}
+}
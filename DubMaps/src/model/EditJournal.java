@@ -0,0 +1,361 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * EditJournal keeps the edits made to a map in MapMaker by appending one line per edit to the
+ * map's journal file as it is made, rather than rewriting the map's data files. FileParser
+ * replays the journal over the data files when the map is loaded, if the user agrees. When
+ * the map is saved under its own name the journal is compacted on the thread FileWriter saves
+ * maps on: the map's latest published snapshot is written to fresh data files with
+ * FileWriter.write, each replaced atomically, and then the records the snapshot holds are
+ * dropped from the journal. Replaying a record that is already in the data files changes
+ * nothing, so no edit is lost if the program stops at any point. Records are tab separated
+ * lines:
+ *
+ *   N  x  y                        a path node
+ *   B  shortName  longName  x  y   a building entrance
+ *   E  x1  y1  x2  y2  length      a path between two nodes, in both directions
+ *   L  shortName  longName  x  y   a label
+ *
+ * A last line without its line break was cut short when the program stopped, and is ignored.
+ * If a record cannot be written, or the journal cannot be replaced while compacting, the
+ * journal is opened again and journaling goes on; only if that fails too does it stop, after
+ * which every add method returns false
+ *
+ * Abstraction function: EditJournal is the list of records in the file at journal, written
+ * for graph
+ *
+ * Representation invariant: graph and journal are not null, and journal ends with a line
+ * break or is empty
+ */
+public class EditJournal {
+	private static final boolean DEBUG = true;
+	private static final String PATH = "src/data/", JOURNAL = "_journal.dat";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private final MapGraph graph;
+	private final String mapName;
+	private final Path journal;
+	private final AtomicBoolean compacting;  // whether a compaction is running
+	private FileChannel out;  // reads and appends to journal, or null once it cannot be opened
+
+	/**
+	 * Opens the journal of the map named mapName, creating it if there is none, to record
+	 * edits made to graph. A record cut short at the end of the journal is removed
+	 * @param mapName: The name of the map files, such as "campus"
+	 * @param graph: The map being edited, loaded with FileParser
+	 * @throws IOException Indicates the journal could not be opened
+	 */
+	public EditJournal(String mapName, MapGraph graph) throws IOException {
+		if (mapName == null || graph == null)
+			throw new IllegalArgumentException("Null input");
+		this.mapName = mapName;
+		this.graph = graph;
+		journal = Paths.get(PATH + mapName + JOURNAL);
+		compacting = new AtomicBoolean(false);
+		open();
+		checkRep();
+	}
+
+	/**
+	 * Records a path node added to the graph
+	 * @param node: The new node
+	 * @return whether the record was written
+	 * @requires called on the thread editing the graph, after the edit has been published
+	 */
+	public boolean addNode(Node<Location> node) {
+		Location l = node.getLocation();
+		return append("N\t" + l.getX() + "\t" + l.getY());
+	}
+
+	/**
+	 * Records a building entrance added to the graph
+	 * @param node: The new entrance
+	 * @return whether the record was written
+	 * @requires called on the thread editing the graph, after the edit has been published
+	 */
+	public boolean addBuilding(Node<Location> node) {
+		return append("B\t" + format(node.getLocation()));
+	}
+
+	/**
+	 * Records a path added to the graph in both directions
+	 * @param parent: One end of the path
+	 * @param child: The other end of the path
+	 * @param length: The path's length
+	 * @return whether the record was written
+	 * @requires called on the thread editing the graph, after the edit has been published
+	 */
+	public boolean addEdge(Node<Location> parent, Node<Location> child, double length) {
+		Location p = parent.getLocation(), c = child.getLocation();
+		return append("E\t" + p.getX() + "\t" + p.getY() + "\t" + c.getX() + "\t" + c.getY()
+				+ "\t" + length);
+	}
+
+	/**
+	 * Records a label added to the graph
+	 * @param label: The new label
+	 * @return whether the record was written
+	 * @requires called on the thread editing the graph, after the edit has been published
+	 */
+	public boolean addLabel(Location label) {
+		return append("L\t" + format(label));
+	}
+
+	/**
+	 * Returns the name of the map whose edits are journaled
+	 * @return the name of the map files, such as "campus"
+	 */
+	public String getMapName() {
+		return mapName;
+	}
+
+	/**
+	 * Starts saving the map and folding the journal into its data files, after any save
+	 * already queued, unless a compaction is already waiting or running
+	 * @return whether a compaction was queued
+	 * @requires called on the thread editing the graph, after every recorded edit has been
+	 * 			 published
+	 */
+	public boolean compact() {
+		if (!compacting.compareAndSet(false, true))
+			return false;
+		// every record up to here is in the snapshot, since each is written after publishing
+		final MapSnapshot snapshot = graph.getSnapshot();
+		final long folded = length();
+		if (folded < 0) {
+			compacting.set(false);
+			return false;
+		}
+		FileWriter.queue(new Runnable() {
+			public void run() {
+				try {
+					FileWriter.write(snapshot, mapName);
+					drop(folded);
+				} catch (IOException e) {
+					System.err.println("file error: journal could not be compacted");
+					e.printStackTrace(System.err);
+				} finally {
+					compacting.set(false);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Applies every record in the journal of the map named mapName to graph. Nodes already in
+	 * graph are reused and edges and labels already in it are not added again, so records
+	 * already in the data files change nothing
+	 * @param mapName: The name of the map files, such as "campus"
+	 * @param graph: The graph loaded from the map's data files
+	 * @return the number of records read, 0 if the map has no journal
+	 * @throws IOException Indicates the journal could not be read or holds a malformed record,
+	 * 		   in which case the records before it have been applied
+	 * @modifies graph
+	 */
+	public static int replay(String mapName, MapGraph graph) throws IOException {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(Paths.get(PATH + mapName + JOURNAL));
+		} catch (NoSuchFileException e) {
+			return 0;
+		}
+		int count = 0, start = 0;
+		for (int end = 0; end < bytes.length; end++) {
+			if (bytes[end] != '\n')
+				continue;  // a last line without a line break is ignored
+			String line = new String(bytes, start, end - start, UTF8);
+			start = end + 1;
+			count++;
+			try {
+				apply(line.split("\t"), graph);
+			} catch (RuntimeException e) {
+				throw new IOException("bad journal record " + count + " of " + mapName + ": "
+						+ line, e);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns whether the map named mapName has a journal holding anything to replay
+	 * @param mapName: The name of the map files, such as "campus"
+	 * @return false if the map has no journal or it is empty
+	 */
+	public static boolean hasRecords(String mapName) {
+		return new File(PATH + mapName + JOURNAL).length() > 0;
+	}
+
+	/**
+	 * Deletes the journal of the map named mapName, discarding the edits in it
+	 * @param mapName: The name of the map files, such as "campus"
+	 * @throws IOException Indicates the journal exists but could not be deleted
+	 */
+	public static void discard(String mapName) throws IOException {
+		Files.deleteIfExists(Paths.get(PATH + mapName + JOURNAL));
+	}
+
+	// applies the record made of tokens to graph
+	private static void apply(String[] tokens, MapGraph graph) {
+		char kind = tokens[0].length() == 1 ? tokens[0].charAt(0) : '?';
+		if (kind == 'N' && tokens.length == 3) {
+			node(graph, Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]));
+		} else if (kind == 'B' && tokens.length == 5) {
+			graph.add(new Node<Location>(location(tokens)));
+		} else if (kind == 'E' && tokens.length == 6) {
+			Node<Location> parent = node(graph, Double.parseDouble(tokens[1]),
+					Double.parseDouble(tokens[2]));
+			Node<Location> child = node(graph, Double.parseDouble(tokens[3]),
+					Double.parseDouble(tokens[4]));
+			double length = Double.parseDouble(tokens[5]);
+			graph.addEdge(parent, child, length);
+			graph.addEdge(child, parent, length);
+		} else if (kind == 'L' && tokens.length == 5) {
+			graph.addLabel(location(tokens));
+		} else {
+			throw new IllegalArgumentException("unknown record");
+		}
+	}
+
+	// returns the node of graph at x, y, adding a path node there if there is none
+	private static Node<Location> node(MapGraph graph, double x, double y) {
+		Node<Location> n = graph.getNode(x, y);
+		if (n == null) {
+			n = new Node<Location>(x, y);
+			graph.add(n);
+		}
+		return n;
+	}
+
+	// returns the location named by a building or label record
+	private static Location location(String[] tokens) {
+		return new Location(tokens[1], tokens[2], Double.parseDouble(tokens[3]),
+				Double.parseDouble(tokens[4]));
+	}
+
+	// returns l's names and coordinates as tab separated fields
+	private static String format(Location l) {
+		return l.getName() + "\t" + l.getLongName() + "\t" + l.getX() + "\t" + l.getY();
+	}
+
+	// opens the journal to read and append to, creating it if there is none and removing a
+	// record cut short at its end
+	private void open() throws IOException {
+		FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			byte[] bytes = Files.readAllBytes(journal);
+			int end = bytes.length;
+			while (end > 0 && bytes[end - 1] != '\n')
+				end--;
+			channel.truncate(end);
+			channel.position(end);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		out = channel;
+	}
+
+	// appends record to the journal and forces it to disk. If the write fails the journal is
+	// opened again, which removes any part of the record written, and the record is written
+	// once more. returns whether the record was written
+	private boolean append(String record) {
+		ByteBuffer bytes = UTF8.encode(record + "\n");
+		synchronized (this) {
+			if (out == null)
+				return false;
+			try {
+				write(bytes);
+			} catch (IOException e) {
+				close();
+				try {
+					open();
+					bytes.rewind();
+					write(bytes);
+				} catch (IOException again) {
+					System.err.println("file error: edits can no longer be journaled");
+					again.printStackTrace(System.err);
+					close();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	// writes bytes at the end of the journal and forces them to disk
+	private void write(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining())
+			out.write(bytes);
+		out.force(false);
+	}
+
+	// drops the first folded bytes of the journal, keeping any records appended since, by
+	// replacing the journal with a file holding only those records. The journal is opened
+	// again afterwards whether or not it was replaced, since it is left whole if not
+	private synchronized void drop(long folded) throws IOException {
+		if (out == null)
+			return;
+		ByteBuffer rest = ByteBuffer.allocate((int) (out.size() - folded));
+		while (rest.hasRemaining() && out.read(rest, folded + rest.position()) >= 0)
+			;
+		rest.flip();
+		close();
+		try {
+			FileWriter.replace(journal.toString(), UTF8.decode(rest));
+		} finally {
+			try {
+				open();
+			} catch (IOException e) {
+				System.err.println("file error: edits can no longer be journaled");
+				e.printStackTrace(System.err);
+			}
+		}
+		checkRep();
+	}
+
+	// returns the journal's length, or -1 if it is no longer used or cannot be read
+	private synchronized long length() {
+		if (out == null)
+			return -1;
+		try {
+			return out.size();
+		} catch (IOException e) {
+			System.err.println("file error: edits can no longer be journaled");
+			e.printStackTrace(System.err);
+			close();
+			return -1;
+		}
+	}
+
+	// closes the journal, if it is open, until it is opened again
+	private void close() {
+		if (out == null)
+			return;
+		try {
+			out.close();
+		} catch (IOException e) {
+			// already failed
+		}
+		out = null;
+	}
+
+	// verifies the representation invariant
+	private void checkRep() {
+		if (DEBUG) {
+			assert (graph != null && journal != null);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package model;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
@@ -14,27 +15,60 @@ import java.io.IOException;
  */
 public class FileParser {
 	private final MapGraph graph;
-	private final String PATH = "src/data/",
-						 LABELS = "_labels.dat",
-						 PATHS = "_paths.dat",
-						 BUILDINGS = "_buildings.dat";
+	private static final String PATH = "src/data/",
+								LABELS = "_labels.dat",
+								PATHS = "_paths.dat",
+								BUILDINGS = "_buildings.dat";
 	
 	/**
 	 * Parses input files into node and location data, or an empty graph if the files are
-	 * do not exist
+	 * do not exist. An up to date compiled map is loaded instead of the text files if present.
+	 * Edits journaled by MapMaker are replayed over the files
 	 * @requires input files are properly formatted and without duplicates
 	 * @param filename: the name of the map files to be parsed
 	 * @modifies this
 	 */
 	public FileParser (String filename){
-		graph = new MapGraph();
-		try {
-			parseBuildings(PATH + filename + BUILDINGS);
-			parsePaths(PATH + filename + PATHS);
-			parseLabels(PATH + filename + LABELS);
-		} catch (Exception e) { 
-			/* ignore */
+		this(filename, true);
+	}
+	
+	/**
+	 * Parses input files into node and location data, or an empty graph if the files are
+	 * do not exist. Edits journaled by MapMaker are replayed over the files
+	 * @requires input files are properly formatted and without duplicates
+	 * @param filename: the name of the map files to be parsed
+	 * @param compiled: whether an up to date compiled map may be loaded instead
+	 * @modifies this
+	 */
+	public FileParser (String filename, boolean compiled){
+		this(filename, compiled, true);
+	}
+	
+	/**
+	 * Parses input files into node and location data, or an empty graph if the files are
+	 * do not exist
+	 * @requires input files are properly formatted and without duplicates
+	 * @param filename: the name of the map files to be parsed
+	 * @param compiled: whether an up to date compiled map may be loaded instead
+	 * @param journal: whether edits journaled by MapMaker are replayed over the files
+	 * @modifies this
+	 */
+	public FileParser (String filename, boolean compiled, boolean journal){
+		MapGraph loaded = compiled ? readCompiled(filename) : null;
+		graph = loaded != null ? loaded : new MapGraph();
+		if (loaded == null) {
+			try {
+				parseBuildings(PATH + filename + BUILDINGS);
+				parsePaths(PATH + filename + PATHS);
+				parseLabels(PATH + filename + LABELS);
+			} catch (Exception e) { 
+				/* ignore */
+			}
 		}
+		if (journal)
+			parseJournal(filename);
+		graph.setSource(filename);
+		graph.publish();
 	}
 	
 	/**
@@ -45,6 +79,64 @@ public class FileParser {
 		return graph;
 	}
 	
+	/**
+	 * Reads a snapshot of the map named filename straight from its compiled map, without
+	 * building a MapGraph, for programs that only route. Returns null if the compiled map
+	 * would not be loaded by the constructor, or edits are journaled over it, in which case
+	 * the map must be parsed instead
+	 * @param filename: the name of the map files
+	 * @param routing: the search the snapshot's getPath uses when no mode is given
+	 * @return a snapshot of the map, or null
+	 */
+	public static MapSnapshot readSnapshot(String filename, MapGraph.RoutingMode routing) {
+		File compiled = getCompiled(filename);
+		if (compiled == null || EditJournal.hasRecords(filename))
+			return null;
+		try {
+			return CompiledMap.readSnapshot(compiled.getPath(), routing);
+		} catch (IOException e) {
+			System.err.println(e.toString() + ", reading text files instead");
+			return null;
+		}
+	}
+	
+	// returns the graph in filename's compiled map, or null if there is none, it is older
+	// than any of the text files, or it cannot be read
+	private MapGraph readCompiled(String filename) {
+		File compiled = getCompiled(filename);
+		if (compiled == null)
+			return null;
+		try {
+			return CompiledMap.read(compiled.getPath());
+		} catch (IOException e) {
+			System.err.println(e.toString() + ", reading text files instead");
+			return null;
+		}
+	}
+	
+	// returns filename's compiled map, or null if there is none or it is older than any of
+	// the text files
+	private static File getCompiled(String filename) {
+		File compiled = new File(CompiledMap.getFile(filename));
+		if (!compiled.exists())
+			return null;
+		for (String suffix: new String[] { BUILDINGS, PATHS, LABELS }) {
+			if (new File(PATH + filename + suffix).lastModified() > compiled.lastModified())
+				return null;  // edited since it was compiled
+		}
+		return compiled;
+	}
+	
+	// replays the edits journaled since the map files were last written
+	private void parseJournal(String filename) {
+		try {
+			EditJournal.replay(filename, graph);
+		} catch (IOException e) {
+			System.err.println(e.toString());
+			e.printStackTrace(System.err);
+		}
+	}
+	
 	// Parse label file into the graph
 	private void parseLabels(String filename) throws Exception {
 		BufferedReader reader = null;
@@ -96,78 +188,14 @@ public class FileParser {
 	 * @requires filename is formatted correctly
 	 */
 	private void parsePaths(String filename) {
-	    BufferedReader reader = null;
-	    try {
-	        reader = new BufferedReader(new FileReader(filename));
-	        
-	        // Construct a map of campus path information and nodes
-	        String inputLine;
-	        Node<Location> parent = null;
-	        Node<Location> child = null;
-	        String[] tokens;        	
-        	double x;
-        	double y;
-        	
-	        while ((inputLine = reader.readLine()) != null) {	        	
-	        	// no tab indicates the node is a new parent node
-	            if (!inputLine.startsWith("\t")) {
-	            	
-	            	// split tokens and save them in x,y coordinates
-	            	tokens = inputLine.split(",");
-	            	x = Double.parseDouble(tokens[0]);
-	            	y = Double.parseDouble(tokens[1]);
-	            	
-	            	// check if the parent node has already been found in the buildings file
-	            	if (graph.getNode(x, y) != null) { 
-	            		parent = graph.getNode(x, y);
-	            	} else { 
-	            		// node is a not in the buildings file; represent as a path	            		
-	            		parent = new Node<Location>(x, y);
-
-	            		// add new node to the graph
-	            		graph.add(parent);
-	            	}
-	            } else { //add edges to parent node
-	            	// parse data
-	            	inputLine = inputLine.trim();
-	            	tokens = inputLine.split("[, ]"); //split x, y, and distance
-	            	tokens[1] = tokens[1].substring(0, tokens[1].length() - 1); //remove colon
-	            	
-	            	// save x y coordinates and length
-	            	x = Double.parseDouble(tokens[0]);
-	            	y = Double.parseDouble(tokens[1]);
-	            	double label = Double.parseDouble(tokens[2]);
-	            	
-	            	// check if child node has already been found in the buildings file
-	            	if (graph.getNode(x, y) != null) { 
-	            		child = graph.getNode(x, y);
-	            	} else {
-	            		// node is a not in the buildings file; represent as a path	            		
-	            		child = new Node<Location>(x, y); 
-	            		
-	            		// add new node to the graph
-	            		graph.add(child);
-	            	}
-	            	// add new edges
-	            	parent.addEdge(child, label);
-            		child.addEdge(parent, label);
-	            }
-	        }	        
-	    } catch (FileNotFoundException e) {
-        	return; 
-        } catch (IOException e) {
-	        System.err.println(e.toString());
-	        e.printStackTrace(System.err);
-	    } finally {
-	        if (reader != null) {
-	            try {
-	                reader.close();
-	            } catch (IOException e) {
-	                System.err.println(e.toString());
-	                e.printStackTrace(System.err);
-	            }
-	        }
-	    }    
+		if (!new File(filename).exists())
+			return;
+		try {
+			new PathsParser(filename).addTo(graph);
+		} catch (IOException e) {
+			System.err.println(e.toString());
+			e.printStackTrace(System.err);
+		}
 	}
 	
 	/**
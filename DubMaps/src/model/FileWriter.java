@@ -2,12 +2,21 @@ package model;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
@@ -16,82 +25,158 @@ import javax.swing.JTextField;
 
 /*
  * FileWriter writes out a MapGraph to 3 data files: one for labels, buildings, and paths.
+ * The files are written from a snapshot of the graph on a background thread, so the map
+ * can go on being edited while it is saved. Each file is written whole to a temporary file,
+ * forced to disk and then renamed over the old one, so a crash leaves either the old file or
+ * the new one and never a partly written file. Saves and journal compactions run one at a
+ * time on a single thread, since two writes of the same file would share its temporary file
  */
 public class FileWriter {
-	private final MapGraph data;
+	private final MapSnapshot data;
 	// suffixes for data files
-	private final String PATH = "src/data/",
+	private static final String PATH = "src/data/",
 						 LABELS = "_labels.dat",
 						 PATHS = "_paths.dat",
-						 BUILDINGS = "_buildings.dat";
+						 BUILDINGS = "_buildings.dat",
+						 TEMPORARY = ".tmp";
+	private static final String NEWLINE = System.getProperty("line.separator");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	// runs saves and journal compactions one at a time, in the order they were asked for
+	private static final ThreadPoolExecutor WRITER = new ThreadPoolExecutor(1, 1, 1,
+			TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			return new Thread(r, "map writer");
+		}
+	});
+	static {
+		WRITER.allowCoreThreadTimeOut(true);  // so an idle writer does not keep the program up
+	}
 	
 	/**
 	 * Prompts the user for a filename and writes out data files with that name
-	 * as a prefix if entered. Does nothing otherwise
+	 * as a prefix if entered. Does nothing otherwise. Must be called on the thread
+	 * editing data; the files are written on another thread as data was when called
 	 * @param data: The MapGraph to be written to file
 	 */
 	public FileWriter(MapGraph data) {
-		this.data = data;
-		String filename = getFilename();
-		if (filename != null) {
-			try {
-				writePaths(PATH + filename + PATHS);
-				writeBuildings(PATH + filename + BUILDINGS);
-				writeLabels(PATH + filename + LABELS);
-			} catch (IOException e) {
-				System.out.println("file error: files could not be written to");
-				e.printStackTrace();
+		this(data, null);
+	}
+	
+	/**
+	 * Prompts the user for a filename and writes out data files with that name as a prefix
+	 * if entered, as FileWriter(data) does. If the name is the one journal records edits for,
+	 * the journal is compacted instead, which writes the same files and then drops the edits
+	 * they now hold from the journal
+	 * @param data: The MapGraph to be written to file
+	 * @param journal: The journal of edits made to data, or null if there is none
+	 */
+	public FileWriter(MapGraph data, EditJournal journal) {
+		this.data = data.publish();
+		final String filename = getFilename();
+		if (filename == null)
+			return;
+		if (journal != null && filename.equals(journal.getMapName()) && journal.compact())
+			return;
+		queue(new Runnable() {
+			public void run() {
+				try {
+					write(FileWriter.this.data, filename);
+				} catch (IOException e) {
+					System.out.println("file error: files could not be written to");
+					e.printStackTrace();
+				}
 			}
-			
-		}
+		});
+	}
+	
+	/**
+	 * Runs task on the thread maps are saved on, after every save already queued
+	 * @param task: The work to be run, such as writing a map's files
+	 */
+	static void queue(Runnable task) {
+		WRITER.execute(task);
 	}
 
-	// write out all paths in the map to pathsFile
-	private void writePaths(String pathsFile) throws IOException {
-		Path file = Paths.get(pathsFile);
-		List<String> content = new ArrayList<String>();
-		
-		for(Node<Location> n: data.getAllNodes()) {
+	/**
+	 * Writes out all three data files of a map, replacing each one atomically
+	 * @param data: The map to be written
+	 * @param filename: The name of the map files, such as "campus"
+	 * @throws IOException Indicates a file could not be written. Files already replaced
+	 * 		   stay replaced, and the rest are unchanged
+	 */
+	public static void write(MapSnapshot data, String filename) throws IOException {
+		replace(PATH + filename + PATHS, paths(data));
+		replace(PATH + filename + BUILDINGS, locations(data.getBuildings()));
+		replace(PATH + filename + LABELS, locations(data.getLabels()));
+	}
+
+	// returns the contents of the paths file for data: each node's location on one line,
+	// followed by a tab indented line per edge leaving it
+	private static StringBuilder paths(MapSnapshot data) {
+		CompactGraph graph = data.getGraph();
+		StringBuilder content = new StringBuilder(64 * (graph.size() + graph.edgeCount()));
+		for(int n = 0; n < graph.size(); n++) {
 			// add node location
-			String nodeData = n.getLocation().getX() + "," + n.getLocation().getY();
+			content.append(graph.getX(n)).append(',').append(graph.getY(n));
 			
 			// add all edge data
-			for(Edge<Location> e: n.getEdges()) {
-				nodeData += "\n\t" + e.getChild().getLocation().getX() + "," + 
-						    e.getChild().getLocation().getY() + ": " + e.getLength();
+			for(int e = graph.firstEdge(n); e < graph.endEdge(n); e++) {
+				content.append("\n\t").append(graph.getX(graph.getTarget(e))).append(',')
+					   .append(graph.getY(graph.getTarget(e))).append(": ")
+					   .append(graph.getWeight(e));
 			}
-			content.add(nodeData);
+			content.append(NEWLINE);
 		}
-		
-		Files.write(file, content, Charset.forName("UTF-8"));
-		
+		return content;
 	}
 	
-	// writes out all buildings in the map to buildingsFile
-	private void writeBuildings(String buildingsFile) throws IOException {
-		Path file = Paths.get(buildingsFile);
-		List<String> content = new ArrayList<String>();
-		
-		for(Location l: data.getBuildings()) {
-			String line = l.getName() + "\t" + l.getLongName() 
-						  + "\t" + l.getX() + "\t" + l.getY();
-			content.add(line);
+	// returns the contents of a buildings or labels file listing locations
+	private static StringBuilder locations(List<Location> locations) {
+		StringBuilder content = new StringBuilder(64 * locations.size());
+		for(Location l: locations) {
+			content.append(l.getName()).append('\t').append(l.getLongName()).append('\t')
+				   .append(l.getX()).append('\t').append(l.getY()).append(NEWLINE);
 		}
-		
-		Files.write(file, content, Charset.forName("UTF-8"));
+		return content;
 	}
 
-	// writes out all labels in the graph to labelsFile
-	 private void writeLabels(String labelsFile) throws IOException {
-		 Path file = Paths.get(labelsFile);
-		List<String> content = new ArrayList<String>();
-		
-		for(Location l: data.getLabels()) {
-			String line = l.getName() + "\t" + l.getLongName() 
-						  + "\t" + l.getX() + "\t" + l.getY();
-			content.add(line);
+	/**
+	 * Replaces the contents of a file atomically: content is written to a temporary file
+	 * beside it, forced to disk, and renamed over the file
+	 * @param filename: The path of the file to replace
+	 * @param content: The file's new contents
+	 * @throws IOException Indicates the file could not be written, in which case it is
+	 * 		   unchanged
+	 */
+	static void replace(String filename, CharSequence content) throws IOException {
+		replace(filename, UTF8.encode(CharBuffer.wrap(content)));
+	}
+
+	/**
+	 * Replaces the contents of a binary file atomically, as replace does for text
+	 * @param filename: The path of the file to replace
+	 * @param bytes: The file's new contents, from its position to its limit
+	 * @throws IOException Indicates the file could not be written, in which case it is
+	 * 		   unchanged
+	 */
+	static void replace(String filename, ByteBuffer bytes) throws IOException {
+		Path file = Paths.get(filename);
+		Path temporary = Paths.get(filename + TEMPORARY);
+		FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try {
+			while (bytes.hasRemaining())
+				out.write(bytes);
+			out.force(true);
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
 		}
-		Files.write(file, content, Charset.forName("UTF-8"));
 	}
 
 	// prompts the user for a filename. returns the filename if supplied, or null
@@ -0,0 +1,181 @@
+package model;
+
+import java.util.Arrays;
+
+/*
+ * Abstraction function: IndexedHeap is a binary min-heap of integer ids, each ordered by a
+ * primitive double key. Ids with equal keys are ordered by id, so the removal order is a
+ * total order and searches are deterministic. heap[0] through heap[size - 1] hold the ids in
+ * heap order and positions[id] is the index of id in heap, or -1 if id is not queued
+ *
+ * Representation invariant: heap[(i - 1) / 2] precedes heap[i] for every 0 < i < size,
+ * and positions[heap[i]] == i for every 0 <= i < size. No key is NaN
+ */
+public class IndexedHeap {
+
+	private int[] heap;
+	private int[] positions;
+	private double[] keys;
+	private int size;
+
+	/**
+	 * Creates an empty heap able to hold ids from 0 to capacity - 1
+	 * @param capacity: The number of ids the heap can hold before growing
+	 */
+	public IndexedHeap(int capacity) {
+		heap = new int[capacity];
+		keys = new double[capacity];
+		positions = new int[capacity];
+		Arrays.fill(positions, -1);
+		size = 0;
+	}
+
+	/**
+	 * Grows the heap if necessary so it can hold ids from 0 to capacity - 1
+	 * @param capacity: The number of ids the heap must hold
+	 * @modifies this
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= positions.length)
+			return;
+		int old = positions.length;
+		heap = Arrays.copyOf(heap, capacity);
+		keys = Arrays.copyOf(keys, capacity);
+		positions = Arrays.copyOf(positions, capacity);
+		Arrays.fill(positions, old, capacity, -1);
+	}
+
+	/**
+	 * Returns whether the heap holds no ids
+	 * @return true if the heap is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns whether id is currently queued
+	 * @param id: The id to be checked
+	 * @return true if id is in the heap
+	 */
+	public boolean contains(int id) {
+		return positions[id] >= 0;
+	}
+
+	/**
+	 * Inserts id with the given key, or lowers id's key if it is already queued with a
+	 * larger one. Does nothing if id is queued with a key no larger than key
+	 * @param id: The id to be queued
+	 * @param key: id's priority, lower keys are removed first
+	 * @modifies this
+	 */
+	public void offer(int id, double key) {
+		int pos = positions[id];
+		if (pos < 0) {
+			pos = size++;
+			heap[pos] = id;
+			positions[id] = pos;
+		} else if (key >= keys[id]) {
+			return;
+		}
+		keys[id] = key;
+		siftUp(pos);
+	}
+
+	/**
+	 * Inserts id with the given key, or changes id's key to key if it is already queued,
+	 * whether the new key is larger or smaller
+	 * @param id: The id to be queued
+	 * @param key: id's new priority
+	 * @modifies this
+	 */
+	public void update(int id, double key) {
+		int pos = positions[id];
+		if (pos < 0 || key < keys[id]) {
+			offer(id, key);
+		} else {
+			keys[id] = key;
+			siftDown(pos);
+		}
+	}
+
+	/**
+	 * Returns the smallest key in the heap
+	 * @requires the heap is not empty
+	 * @return the key of the next id to be removed
+	 */
+	public double peekKey() {
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Removes and returns the id with the smallest key
+	 * @requires the heap is not empty
+	 * @modifies this
+	 * @return the removed id
+	 */
+	public int poll() {
+		int top = heap[0];
+		positions[top] = -1;
+		size--;
+		if (size > 0) {
+			int last = heap[size];
+			heap[0] = last;
+			positions[last] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Removes every id from the heap in time proportional to the number queued
+	 * @modifies this
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++)
+			positions[heap[i]] = -1;
+		size = 0;
+	}
+
+	// moves the entry at pos towards the root until its parent's key is no larger
+	private void siftUp(int pos) {
+		int id = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >>> 1;
+			int parentId = heap[parent];
+			if (!precedes(id, parentId))
+				break;
+			heap[pos] = parentId;
+			positions[parentId] = pos;
+			pos = parent;
+		}
+		heap[pos] = id;
+		positions[id] = pos;
+	}
+
+	// moves the entry at pos towards the leaves until neither child's key is smaller
+	private void siftDown(int pos) {
+		int id = heap[pos];
+		int half = size >>> 1;
+		while (pos < half) {
+			int child = 2 * pos + 1;
+			int right = child + 1;
+			if (right < size && precedes(heap[right], heap[child]))
+				child = right;
+			int childId = heap[child];
+			if (!precedes(childId, id))
+				break;
+			heap[pos] = childId;
+			positions[childId] = pos;
+			pos = child;
+		}
+		heap[pos] = id;
+		positions[id] = pos;
+	}
+	
+	// returns true if a should be removed before b: smaller keys first, then smaller ids
+	private boolean precedes(int a, int b) {
+		double ka = keys[a], kb = keys[b];
+		return ka < kb || (ka == kb && a < b);
+	}
+}
@@ -82,11 +82,8 @@ public class Location implements Comparable<Location>{
 	 * Standard hashCode function
 	 */
 	public int hashCode() {
-		String xString = String.valueOf(x);
-		String yString = String.valueOf(y);
-		//combines x and y for a more unique value
-		String total = xString + yString; 
-		return total.hashCode();
+		//combines x and y for a more unique value, without building strings
+		return 31 * Double.hashCode(x) + Double.hashCode(y);
 	}
 	
 	/**
@@ -1,12 +1,13 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 
 /*
  * Abstraction function:graph is represented as a Set<Node<CampusLocation>>
@@ -15,13 +16,31 @@ import java.util.TreeSet;
  * Representation Invariant: graph does not contain any null nodes
  * and each node contains non-null set of edges for 
  * which it is the parent node.
+ *
+ * A MapGraph is edited by one thread at a time. Other threads read the MapSnapshot the
+ * editing thread last published, which never changes once published
  */
 public class MapGraph {
 	
 	private final Set<Location> labels;
 	private final Set<Node<Location>> nodes;
 	private final Set<Node<Location>> destinationNodes;
+	private final SpatialGrid nodeIndex, destinationIndex;  // nodes bucketed by location
+	private final SpatialGrid labelIndex;  // labels, each held by an edgeless node
+	private final CoordinateIndex coordinates;  // nodes by truncated x, y coordinates
+	private final Map<String, Node<Location>> names;  // nodes by location shortName
+	private int version;  // incremented whenever nodes, edges or labels are added
+	private CompactGraph compact;  // frozen copy of the graph at some version
+	private RoutingMode routing;  // search used by getPath when no mode is given
 	private final boolean DEBUG = true;
+	private final double CELL_SIZE = 64;  // spatial index cell width, in map pixels
+	private ContractionHierarchy hierarchy;  // preprocessed copy for CONTRACTION_HIERARCHY
+	private String source;  // map files the graph was loaded from, or null
+	private int sourceVersion;  // the version the graph had when it was loaded
+	private final AtomicReference<MapSnapshot> published;  // the copy other threads read
+	public enum RoutingMode {
+		DIJKSTRA, A_STAR, BIDIRECTIONAL, BIDIRECTIONAL_A_STAR, CONTRACTION_HIERARCHY
+	}
 	
 	/**
 	 * Instantiates a new graph.
@@ -30,6 +49,19 @@ public class MapGraph {
 		labels = new TreeSet<Location>();
 		nodes = new HashSet<Node<Location>>();
 		destinationNodes = new TreeSet<Node<Location>>();
+		nodeIndex = new SpatialGrid(CELL_SIZE);
+		destinationIndex = new SpatialGrid(CELL_SIZE);
+		labelIndex = new SpatialGrid(CELL_SIZE);
+		coordinates = new CoordinateIndex();
+		names = new HashMap<String, Node<Location>>();
+		version = 0;
+		compact = null;
+		routing = RoutingMode.DIJKSTRA;
+		hierarchy = null;
+		source = null;
+		sourceVersion = 0;
+		published = new AtomicReference<MapSnapshot>();
+		publish();
 	}
 	
 	/**
@@ -47,11 +79,7 @@ public class MapGraph {
 	 * @return The node with shortName name
 	 */
 	public Node<Location> getNode(String name) {
-		for (Node<Location> node: nodes) {
-			if (node.getLocation().getName().equals(name))
-				return node;
-		}
-		return null;
+		return names.get(name);
 	}
 	
 	/**
@@ -61,12 +89,7 @@ public class MapGraph {
 	 * @return The node located at x, y
 	 */
 	public Node<Location> getNode(double x, double y) {
-		for (Node<Location> node: nodes) {
-			if ((int) node.getLocation().getX() == (int) x &&
-				(int) node.getLocation().getY() == (int) y)
-				return node;
-		}
-		return null;
+		return coordinates.get(x, y);
 	}
 	
 	/**
@@ -77,18 +100,7 @@ public class MapGraph {
 	 * @return The closest node to x,y within maxDistance, null if none found
 	 */
 	public Node<Location> getClosestNode(int x, int y, int maxDistance) {
-		Node<Location> closest = null;
-		
-		// apply the distance formula on each building node to find the closest one
-		for (Node<Location> n: nodes) {
-			int distance = (int) Math.sqrt(Math.pow(x - n.getLocation().getX(), 2.0) + 
-					                       Math.pow(y - n.getLocation().getY(), 2.0));
-			if (distance < maxDistance) {
-				closest = n;
-				maxDistance = distance;
-			}
-		}
-		return closest;
+		return nodeIndex.getClosest(x, y, maxDistance);
 	}
 	
 	/**
@@ -99,18 +111,50 @@ public class MapGraph {
 	 * @return The closest building to x,y within maxDistance, null if none found
 	 */
 	public Node<Location> getClosestBuilding(int x, int y, int maxDistance) {
-		Node<Location> closest = null;
-		
-		// apply the distance formula on each building node to find the closest one
-		for (Node<Location> n: destinationNodes) {
-			int distance = (int) Math.sqrt(Math.pow(x - n.getLocation().getX(), 2.0) + 
-					                       Math.pow(y - n.getLocation().getY(), 2.0));
-			if (distance < maxDistance) {
-				closest = n;
-				maxDistance = distance;
-			}
-		}
-		return closest;
+		return destinationIndex.getClosest(x, y, maxDistance);
+	}
+	
+	/**
+	 * Returns every node inside the rectangle from minX, minY to maxX, maxY
+	 * @param minX: The rectangle's left edge
+	 * @param minY: The rectangle's top edge
+	 * @param maxX: The rectangle's right edge
+	 * @param maxY: The rectangle's bottom edge
+	 * @return a list of the nodes in the rectangle
+	 */
+	public List<Node<Location>> getNodesIn(double minX, double minY, double maxX, double maxY) {
+		List<Node<Location>> result = new ArrayList<Node<Location>>();
+		nodeIndex.getInRange(minX, minY, maxX, maxY, result);
+		return result;
+	}
+	
+	/**
+	 * Returns the locations of every destination inside the rectangle from minX, minY to
+	 * maxX, maxY
+	 * @param minX: The rectangle's left edge
+	 * @param minY: The rectangle's top edge
+	 * @param maxX: The rectangle's right edge
+	 * @param maxY: The rectangle's bottom edge
+	 * @return a list of the building locations in the rectangle
+	 */
+	public List<Location> getBuildingsIn(double minX, double minY, double maxX, double maxY) {
+		List<Node<Location>> found = new ArrayList<Node<Location>>();
+		destinationIndex.getInRange(minX, minY, maxX, maxY, found);
+		return locations(found);
+	}
+	
+	/**
+	 * Returns every label inside the rectangle from minX, minY to maxX, maxY
+	 * @param minX: The rectangle's left edge
+	 * @param minY: The rectangle's top edge
+	 * @param maxX: The rectangle's right edge
+	 * @param maxY: The rectangle's bottom edge
+	 * @return a list of the label locations in the rectangle
+	 */
+	public List<Location> getLabelsIn(double minX, double minY, double maxX, double maxY) {
+		List<Node<Location>> found = new ArrayList<Node<Location>>();
+		labelIndex.getInRange(minX, minY, maxX, maxY, found);
+		return locations(found);
 	}
 	
 	/**
@@ -159,19 +203,92 @@ public class MapGraph {
 	 * @param node the node to be added
 	 */
 	public void add(Node<Location> node) {
-		checkRep();
 		if (node == null || this.contains(node))
 			return;
 		
 		nodes.add(node);
+		nodeIndex.add(node);
+		coordinates.add(node);
+		if (!names.containsKey(node.getLocation().getName()))
+			names.put(node.getLocation().getName(), node);
 		// check if the node is named as a building/destination
 		if (node.getLocation().getLongName().length() > 3 && 
 			node.getLocation().getLongName().substring(0, 4).equals("Path")) {
 			// ignore path nodes 
 		} else {
 			destinationNodes.add(node);
+			destinationIndex.add(node);
 		}
-		checkRep();
+		version++;
+		checkRep(node);
+	}
+	
+	/**
+	 * Adds a directed edge from parent to child. Does nothing if either node is null,
+	 * length is zero, or an identical edge already exists
+	 * @modifies parent
+	 * @effects adds a new edge to parent's edges
+	 * @param parent: the edge's parent node
+	 * @param child: the edge's child node
+	 * @param length: the edge's length
+	 */
+	public void addEdge(Node<Location> parent, Node<Location> child, double length) {
+		if (parent == null)
+			return;
+		int before = parent.getEdges().size();
+		parent.addEdge(child, length);
+		if (parent.getEdges().size() > before)
+			version++;
+	}
+	
+	/**
+	 * Returns the number of structural changes made to this graph. Edges added directly
+	 * through Node.addEdge are not counted
+	 * @return the graph's version
+	 */
+	public int getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Returns a compact, integer indexed copy of the graph, rebuilding it only if the graph
+	 * has changed since the last call
+	 * @return a CompactGraph matching the current version of this graph
+	 */
+	public CompactGraph getCompactGraph() {
+		if (compact == null || compact.getVersion() != version)
+			compact = new CompactGraph(this);
+		return compact;
+	}
+	
+	/**
+	 * Publishes an unchanging copy of the graph as it is now for getSnapshot to return,
+	 * unless the last one published is still current. Called by the editing thread after
+	 * each edit or batch of edits; edits are not seen by readers until it is called
+	 * @return the snapshot now published
+	 * @modifies this
+	 */
+	public MapSnapshot publish() {
+		CompactGraph graph = getCompactGraph();
+		ContractionHierarchy h = hierarchy != null && hierarchy.getGraph() == graph
+				? hierarchy : null;
+		MapSnapshot last = published.get();
+		if (last != null && last.getGraph() == graph && last.getHierarchy() == h &&
+			last.getLabels().size() == labels.size() && last.getRoutingMode() == routing)
+			return last;  // labels are never removed, so an unchanged count means no change
+		MapSnapshot snapshot = new MapSnapshot(graph, h,
+				new ArrayList<Node<Location>>(destinationNodes), getLabels(), routing);
+		published.set(snapshot);
+		return snapshot;
+	}
+	
+	/**
+	 * Returns the snapshot last published by publish. Safe to call from any thread, and
+	 * never waits on the editing thread
+	 * @return the latest published snapshot
+	 */
+	public MapSnapshot getSnapshot() {
+		return published.get();
 	}
 	
 	/**
@@ -182,6 +299,8 @@ public class MapGraph {
 		if (label == null || this.labels.contains(label))
 			return;
 		labels.add(label);
+		labelIndex.add(new Node<Location>(label));
+		version++;
 	}
 
 	/**
@@ -240,60 +359,118 @@ public class MapGraph {
 		return result;
 	}
 	
+	/**
+	 * Sets the contraction hierarchy searched in CONTRACTION_HIERARCHY mode, such as one
+	 * loaded with ContractionHierarchy.loadOrBuild. It is ignored once the graph changes
+	 * @param hierarchy: A hierarchy built from this graph's current compact copy
+	 * @modifies this
+	 */
+	public void setHierarchy(ContractionHierarchy hierarchy) {
+		this.hierarchy = hierarchy;
+	}
+	
+	/**
+	 * Records that the graph as it is now was loaded from the map files named filename, so
+	 * getHierarchy can reuse the hierarchy saved beside them
+	 * @param filename: The name of the map files, as given to FileParser
+	 * @modifies this
+	 */
+	public void setSource(String filename) {
+		source = filename;
+		sourceVersion = version;
+	}
+	
+	/**
+	 * Returns a contraction hierarchy over the current graph, building one if none has been
+	 * set or the graph has changed since. While the graph is unchanged since it was loaded,
+	 * the hierarchy saved beside its map files is loaded, or built and saved there
+	 * @return a hierarchy matching the current version of this graph
+	 */
+	public ContractionHierarchy getHierarchy() {
+		CompactGraph graph = getCompactGraph();
+		if (hierarchy == null || hierarchy.getGraph() != graph) {
+			if (source != null && version == sourceVersion)
+				hierarchy = ContractionHierarchy.loadOrBuild(source, graph);
+			else
+				hierarchy = new ContractionHierarchy(graph);
+		}
+		return hierarchy;
+	}
+	
+	/**
+	 * Sets the search used by getPath(start, dest), and by snapshots published afterwards
+	 * @param mode: The routing mode to use by default
+	 * @modifies this
+	 */
+	public void setRoutingMode(RoutingMode mode) {
+		if (mode != null)
+			routing = mode;
+	}
+	
+	/**
+	 * Returns the search used by getPath(start, dest)
+	 * @return the default routing mode
+	 */
+	public RoutingMode getRoutingMode() {
+		return routing;
+	}
+	
+	/**
+	 * returns the shortest path from start to dest, null if no path exists, using the
+	 * graph's routing mode
+	 * @param start The start node
+	 * @param dest The destination node
+	 * @return a list of edges leading from start to dest, null if none
+	 * @throws IllegalArgumentException Indicates null parameter
+	 */
+	public List<Edge<Location>> getPath(Node<Location> start, Node<Location> dest) {
+		return getPath(start, dest, routing);
+	}
+	
 	/**
 	 * returns the shortest path from start to dest, null if no path exists
 	 * @param start The start node
 	 * @param dest The destination node
+	 * @param mode The search to run
 	 * @return a list of edges leading from start to dest, null if none
 	 * @throws IllegalArgumentException Indicates null parameter
 	 */
-	public List<Edge<Location>> getPath(Node<Location> start, Node<Location> dest) {	
-		if (start == null || dest == null) {
+	public List<Edge<Location>> getPath(Node<Location> start, Node<Location> dest,
+			RoutingMode mode) {	
+		if (start == null || dest == null || mode == null) {
 			throw new IllegalArgumentException("Null input");
 		}
-		Set<Node<Location>> finished = new HashSet<Node<Location>>();
-		Queue<DijkPath> active = new PriorityQueue<DijkPath>();
-		active.add(new DijkPath(start));
-		
-		// find paths branching off the end node until the queue is empty
-		while (!active.isEmpty()) {
-			DijkPath current = active.remove();
-			Node<Location> node = current.getDest();
-
-			if (finished.contains(node)) { continue; }  //skip already found node
-			if (node.equals(dest)) {
-				return current.getPath();  // found destination node! return path 
-			}
-			
-			// destination not found, avoid re-finding current 
-			finished.add(node);
-			
-			// continue paths to node's children if they have not been found
-			for (Edge<Location> e: node.getEdges()) {
-				if (finished.contains(e.getChild())) { continue; }  // skip found nodes
-				
-				// build next DijkPath and add it to the queue
-				Double newCost = current.getCost() + e.getLength();
-				List<Edge<Location>> newPath = new ArrayList<Edge<Location>>();
-				newPath.addAll(current.getPath());
-				newPath.add(e);
-				DijkPath next = new DijkPath(newCost, e.getChild(), newPath);
-				active.add(next);
-			}
+		if (start.equals(dest)) {
+			return new ArrayList<Edge<Location>>();  // already at the destination
 		}
-		return null;
+		
+		// search the compact copy of the graph with this thread's reusable workspace
+		CompactGraph graph = getCompactGraph();
+		int from = graph.getId(start), to = graph.getId(dest);
+		if (from < 0 || to < 0) { return null; }  // no path leaves or enters the graph
+		if (mode == RoutingMode.CONTRACTION_HIERARCHY)
+			return PathFinder.get().getPath(getHierarchy(), from, to);
+		return PathFinder.get().getPath(graph, from, to, mode);
+	}
+	
+	// returns the location of each node in nodes
+	private static List<Location> locations(List<Node<Location>> nodes) {
+		List<Location> result = new ArrayList<Location>(nodes.size());
+		for (Node<Location> n: nodes)
+			result.add(n.getLocation());
+		return result;
 	}
 	
 	/**
-	 * Checks that the representation invariant holds
+	 * Checks that the representation invariant holds for a newly added node. Earlier nodes
+	 * were checked when they were added, so adding stays constant time
 	 */
-	private void checkRep() {
+	private void checkRep(Node<Location> node) {
 		if (DEBUG) {
 			assert (nodes != null);
-			for (Node<Location> node: nodes) {
-				assert(node != null);
-				assert(((Node<Location>) node).getEdges() != null);
-			}
+			assert (node != null);
+			assert (node.getEdges() != null);
+			assert (coordinates.size() <= nodes.size());
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import model.MapGraph.RoutingMode;
+
+/*
+ * MapSnapshot is an unchanging copy of a map as it was when MapGraph.publish was called. The
+ * graph that published it may go on being edited while any number of threads read the
+ * snapshot, so routing, drawing and saving never see a half made edit and never wait on the
+ * editor. A snapshot shares its CompactGraph with the graph that published it, so publishing
+ * after an edit costs one compact copy, which routing would have built anyway. Nearest node
+ * lookups search spatial indexes built the first time each is needed
+ *
+ * Abstraction function: MapSnapshot is the map at version, with the nodes and edges in graph,
+ * the building entrances in entrances and the labels in labels, searched with routing unless
+ * another mode is given
+ *
+ * Representation invariant: graph, entrances, labels and routing are not null, graph's version
+ * is version, every node in entrances is in graph, hierarchy is null or built from graph, and
+ * nodeIndex and entranceIndex are null or hold every node of graph and entrances
+ */
+public class MapSnapshot {
+	private static final boolean DEBUG = true;
+	private static final double CELL_SIZE = 64;  // spatial index cell width, as in MapGraph
+	private final int version;
+	private final CompactGraph graph;
+	private final ContractionHierarchy hierarchy;  // the graph's hierarchy, if one was built
+	private final List<Node<Location>> entrances;
+	private final List<Location> buildings;  // the location of each entrance, in order
+	private final List<Location> labels;
+	private final RoutingMode routing;
+	private volatile SpatialGrid nodeIndex, entranceIndex;  // built when first searched
+
+	/**
+	 * Constructs a snapshot of a map
+	 * @param graph: A compact copy of the map's nodes and edges
+	 * @param hierarchy: A hierarchy built from graph, or null if none has been built
+	 * @param entrances: The map's building entrance nodes
+	 * @param labels: The map's labels
+	 * @param routing: The search used by getPath when no mode is given
+	 * @requires no argument but hierarchy is null, and the lists are not changed afterwards
+	 */
+	MapSnapshot(CompactGraph graph, ContractionHierarchy hierarchy,
+			List<Node<Location>> entrances, List<Location> labels, RoutingMode routing) {
+		this.graph = graph;
+		this.hierarchy = hierarchy;
+		this.entrances = Collections.unmodifiableList(entrances);
+		this.labels = Collections.unmodifiableList(labels);
+		this.routing = routing;
+		version = graph.getVersion();
+		List<Location> locations = new ArrayList<Location>(entrances.size());
+		for (Node<Location> n: entrances)
+			locations.add(n.getLocation());
+		buildings = Collections.unmodifiableList(locations);
+		checkRep();
+	}
+
+	/**
+	 * Returns the version of the graph this snapshot was published at
+	 * @return the graph's version when published
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the snapshot's nodes and edges
+	 * @return the compact graph
+	 */
+	public CompactGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the contraction hierarchy built for this snapshot's graph, if the graph that
+	 * published it had built one by then
+	 * @return the hierarchy, or null
+	 */
+	public ContractionHierarchy getHierarchy() {
+		return hierarchy;
+	}
+
+	/**
+	 * Returns the node at every building entrance
+	 * @return an unmodifiable list of entrance nodes
+	 */
+	public List<Node<Location>> getEntrances() {
+		return entrances;
+	}
+
+	/**
+	 * Returns the location of every building entrance
+	 * @return an unmodifiable list of entrance locations, in the order of getEntrances
+	 */
+	public List<Location> getBuildings() {
+		return buildings;
+	}
+
+	/**
+	 * Returns every label
+	 * @return an unmodifiable list of label locations
+	 */
+	public List<Location> getLabels() {
+		return labels;
+	}
+
+	/**
+	 * Returns the node closest to x, y that is less than maxDistance away. Safe to call from
+	 * any number of threads at once
+	 * @param x: The x coordinate to be searched for
+	 * @param y: The y coordinate to be searched for
+	 * @param maxDistance: The distance the node must be closer than
+	 * @return the closest node, null if none is close enough
+	 */
+	public Node<Location> getClosestNode(double x, double y, double maxDistance) {
+		SpatialGrid index = nodeIndex;
+		if (index == null) {
+			index = new SpatialGrid(CELL_SIZE);  // racing threads build equal indexes
+			for (int i = 0; i < graph.size(); i++)
+				index.add(graph.getNode(i));
+			nodeIndex = index;
+		}
+		return index.getClosest(x, y, maxDistance);
+	}
+
+	/**
+	 * Returns the building entrance closest to x, y that is less than maxDistance away. Safe
+	 * to call from any number of threads at once
+	 * @param x: The x coordinate to be searched for
+	 * @param y: The y coordinate to be searched for
+	 * @param maxDistance: The distance the entrance must be closer than
+	 * @return the closest entrance node, null if none is close enough
+	 */
+	public Node<Location> getClosestBuilding(double x, double y, double maxDistance) {
+		SpatialGrid index = entranceIndex;
+		if (index == null) {
+			index = new SpatialGrid(CELL_SIZE);  // racing threads build equal indexes
+			for (Node<Location> n: entrances)
+				index.add(n);
+			entranceIndex = index;
+		}
+		return index.getClosest(x, y, maxDistance);
+	}
+
+	/**
+	 * Returns the search used by getPath(start, dest)
+	 * @return the routing mode of the graph when published
+	 */
+	public RoutingMode getRoutingMode() {
+		return routing;
+	}
+
+	/**
+	 * Returns the shortest path from start to dest using the snapshot's routing mode. Safe
+	 * to call from any number of threads at once
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @return a list of edges leading from start to dest, null if none
+	 * @throws IllegalArgumentException if start or dest is null
+	 */
+	public List<Edge<Location>> getPath(Node<Location> start, Node<Location> dest) {
+		return getPath(start, dest, routing);
+	}
+
+	/**
+	 * Returns the shortest path from start to dest. Safe to call from any number of threads
+	 * at once. CONTRACTION_HIERARCHY searches without a hierarchy fall back to
+	 * BIDIRECTIONAL_A_STAR, which finds routes of the same length
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @param mode: The search to run
+	 * @return a list of edges leading from start to dest, null if none
+	 * @throws IllegalArgumentException if any argument is null
+	 */
+	public List<Edge<Location>> getPath(Node<Location> start, Node<Location> dest,
+			RoutingMode mode) {
+		if (start == null || dest == null || mode == null)
+			throw new IllegalArgumentException("Null input");
+		if (start.equals(dest))
+			return new ArrayList<Edge<Location>>();  // already at the destination
+		int from = graph.getId(start), to = graph.getId(dest);
+		if (from < 0 || to < 0)
+			return null;  // no path leaves or enters the graph
+		if (mode == RoutingMode.CONTRACTION_HIERARCHY) {
+			if (hierarchy != null)
+				return PathFinder.get().getPath(hierarchy, from, to);
+			mode = RoutingMode.BIDIRECTIONAL_A_STAR;
+		}
+		return PathFinder.get().getPath(graph, from, to, mode);
+	}
+
+	// verifies the representation invariant
+	private void checkRep() {
+		if (DEBUG) {
+			assert (graph != null && entrances != null && labels != null && routing != null);
+			assert (graph.getVersion() == version);
+			for (Node<Location> n: entrances)
+				assert (graph.getId(n) >= 0);
+			assert (hierarchy == null || hierarchy.getGraph() == graph);
+		}
+	}
+}
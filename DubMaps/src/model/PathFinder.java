@@ -0,0 +1,376 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import model.MapGraph.RoutingMode;
+
+/*
+ * PathFinder runs shortest path searches over a CompactGraph without allocating per relaxed
+ * edge. A PathFinder is used by one thread at a time, either as that thread's own or borrowed
+ * from a RouteExecutor's pool, and its distance, predecessor and heap arrays are reused between
+ * searches. Entries are stamped with the search that set them, so starting a search clears
+ * nothing. Searches run as plain Dijkstra or as A* guided by the straight-line distance to
+ * the destination, either from the start alone or from both ends at once, or upward through a
+ * ContractionHierarchy
+ */
+public class PathFinder {
+
+	private static final ThreadLocal<PathFinder> LOCAL = new ThreadLocal<PathFinder>() {
+		protected PathFinder initialValue() {
+			return new PathFinder();
+		}
+	};
+
+	private final Frontier forward;  // search from the start along edge directions
+	private final Frontier backward;  // search from the destination against edge directions
+	private int settledCount;  // nodes removed from the heaps by the last search
+	private int[] route;  // scratch space for rebuilding a path from predecessors
+	private int[] wanted;  // the number of times each node id is a target of searchAll
+
+	/**
+	 * Returns the calling thread's PathFinder
+	 * @return a PathFinder that is only ever used by the current thread
+	 */
+	public static PathFinder get() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Creates a PathFinder with empty workspace arrays, grown on first use
+	 */
+	public PathFinder() {
+		forward = new Frontier();
+		backward = new Frontier();
+		route = new int[0];
+		wanted = new int[0];
+		settledCount = 0;
+	}
+
+	/**
+	 * Returns the shortest path from start to dest, null if no path exists
+	 * @param graph: The graph to be searched
+	 * @param start: The id of the start node
+	 * @param dest: The id of the destination node
+	 * @param mode: The search to run
+	 * @return a list of edges leading from start to dest, null if none
+	 */
+	public List<Edge<Location>> getPath(CompactGraph graph, int start, int dest,
+			RoutingMode mode) {
+		settledCount = 0;
+		if (mode == RoutingMode.BIDIRECTIONAL || mode == RoutingMode.BIDIRECTIONAL_A_STAR) {
+			int meet = searchBoth(graph, start, dest, mode == RoutingMode.BIDIRECTIONAL_A_STAR);
+			return meet < 0 ? null : buildPath(graph, meet);
+		}
+		if (!search(graph, start, dest, mode == RoutingMode.A_STAR))
+			return null;
+		return buildPath(graph, dest);
+	}
+
+	/**
+	 * Returns the shortest path from start to dest through a contraction hierarchy, null if
+	 * no path exists. Both searches only climb to higher ranked nodes, and the shortcuts on
+	 * the route found are unpacked into edges of the hierarchy's original graph
+	 * @param hierarchy: The preprocessed graph to be searched
+	 * @param start: The id of the start node
+	 * @param dest: The id of the destination node
+	 * @return a list of edges leading from start to dest, null if none
+	 */
+	public List<Edge<Location>> getPath(ContractionHierarchy hierarchy, int start, int dest) {
+		settledCount = 0;
+		int size = hierarchy.getGraph().size();
+		forward.prepare(size);
+		backward.prepare(size);
+		forward.set(start, 0.0, -1);
+		backward.set(dest, 0.0, -1);
+		forward.heap.offer(start, 0.0);
+		backward.heap.offer(dest, 0.0);
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+
+		// settle the side with the smaller key until neither can improve on best
+		while (true) {
+			boolean forwards = !forward.heap.isEmpty() && forward.heap.peekKey() < best;
+			boolean backwards = !backward.heap.isEmpty() && backward.heap.peekKey() < best;
+			if (!forwards && !backwards)
+				break;
+			if (forwards && backwards)
+				forwards = forward.heap.peekKey() <= backward.heap.peekKey();
+			Frontier side = forwards ? forward : backward;
+			Frontier other = forwards ? backward : forward;
+			int node = side.heap.poll();
+			settledCount++;
+			double base = side.distance(node);
+			if (base + other.distance(node) < best) {
+				best = base + other.distance(node);
+				meet = node;
+			}
+
+			int first = forwards ? hierarchy.firstUpEdge(node) : hierarchy.firstDownEdge(node);
+			int end = forwards ? hierarchy.endUpEdge(node) : hierarchy.endDownEdge(node);
+			for (int e = first; e < end; e++) {
+				int next = forwards ? hierarchy.getUpTarget(e) : hierarchy.getDownSource(e);
+				double cost = base + (forwards ? hierarchy.getUpWeight(e) :
+					hierarchy.getDownWeight(e));
+				if (cost < side.distance(next)) {
+					side.set(next, cost, node);
+					side.heap.offer(next, cost);
+				}
+			}
+		}
+		forward.heap.clear();
+		backward.heap.clear();
+		if (meet < 0)
+			return null;
+
+		// collect the route through the hierarchy, then expand its shortcuts
+		int length = collectRoute(meet);
+		int[] unpacked = hierarchy.unpack(route, length);
+		return hierarchy.getGraph().toEdges(unpacked, unpacked.length);
+	}
+
+	/**
+	 * Runs Dijkstra's algorithm from start until every target is settled, then copies each
+	 * target's distance into distances and, if tree is not null, every node's predecessor
+	 * into tree
+	 * @param graph: The graph to be searched
+	 * @param start: The id of the start node
+	 * @param targets: Ids of the nodes whose distances are wanted; -1 entries are unreachable
+	 * @param distances: Receives the distance to targets[i] at offset + i, or
+	 * 		  Double.POSITIVE_INFINITY if it cannot be reached
+	 * @param offset: The index in distances of the first target's distance
+	 * @param tree: Receives the id of the node before each node id i on its shortest path
+	 * 		  from start at treeOffset + i, or -1 if it was not reached; may be null
+	 * @param treeOffset: The index in tree of node 0's predecessor
+	 * @requires distances and tree have room for every entry written
+	 * @modifies distances, tree
+	 */
+	public void searchAll(CompactGraph graph, int start, int[] targets, double[] distances,
+			int offset, int[] tree, int treeOffset) {
+		settledCount = 0;
+		forward.prepare(graph.size());
+		backward.prepare(0);
+		forward.set(start, 0.0, -1);
+		forward.heap.offer(start, 0.0);
+
+		// stop as soon as the last reachable target is settled
+		if (wanted.length < graph.size())
+			wanted = new int[graph.size()];
+		int remaining = 0;
+		for (int t: targets) {
+			if (t >= 0) {
+				wanted[t]++;
+				remaining++;
+			}
+		}
+		while (remaining > 0 && !forward.heap.isEmpty()) {
+			int node = forward.heap.poll();
+			settledCount++;
+			remaining -= wanted[node];
+			double base = forward.distance(node);
+			for (int e = graph.firstEdge(node), end = graph.endEdge(node); e < end; e++) {
+				int child = graph.getTarget(e);
+				double cost = base + graph.getWeight(e);
+				if (cost < forward.distance(child)) {
+					forward.set(child, cost, node);
+					forward.heap.offer(child, cost);
+				}
+			}
+		}
+		forward.heap.clear();
+		for (int t: targets) {
+			if (t >= 0)
+				wanted[t] = 0;
+		}
+
+		for (int i = 0; i < targets.length; i++)
+			distances[offset + i] = targets[i] < 0 ? Double.POSITIVE_INFINITY :
+				forward.distance(targets[i]);
+		if (tree != null) {
+			for (int i = 0; i < graph.size(); i++)
+				tree[treeOffset + i] = forward.parent(i);
+		}
+	}
+
+	/**
+	 * Returns the number of nodes settled by this thread's last search, for comparing
+	 * how much of the graph each routing mode explores
+	 * @return the last search's settled node count
+	 */
+	public int getSettledCount() {
+		return settledCount;
+	}
+
+	// runs Dijkstra's algorithm from start, stopping once dest is settled. Queue keys are
+	// offset by the estimated distance to dest when guided is true. Returns true if dest
+	// was reached
+	private boolean search(CompactGraph graph, int start, int dest, boolean guided) {
+		forward.prepare(graph.size());
+		backward.prepare(0);  // only the forward half of the path is used
+		forward.set(start, 0.0, -1);
+		forward.heap.offer(start, guided ? graph.estimate(start, dest) : 0.0);
+
+		while (!forward.heap.isEmpty()) {
+			int node = forward.heap.poll();
+			settledCount++;
+			if (node == dest) {
+				forward.heap.clear();
+				return true;  // found destination node!
+			}
+			double base = forward.distance(node);
+
+			// relax every edge leaving node
+			for (int e = graph.firstEdge(node), end = graph.endEdge(node); e < end; e++) {
+				int child = graph.getTarget(e);
+				double cost = base + graph.getWeight(e);
+				if (cost < forward.distance(child)) {
+					forward.set(child, cost, node);
+					forward.heap.offer(child, guided ? cost + graph.estimate(child, dest) : cost);
+				}
+			}
+		}
+		return false;
+	}
+
+	// searches forward from start and backward from dest at the same time, returning the id of
+	// a node on a shortest path where the searches meet, or -1 if dest cannot be reached.
+	// When guided, forward keys are offset by the potential p(v) = (h(v, dest) - h(start, v)) / 2
+	// and backward keys by -p(v), which keeps every reduced edge length non-negative. With
+	// either potential the search can stop once the two smallest keys sum to the best path
+	// length found so far
+	private int searchBoth(CompactGraph graph, int start, int dest, boolean guided) {
+		forward.prepare(graph.size());
+		backward.prepare(graph.size());
+		forward.set(start, 0.0, -1);
+		backward.set(dest, 0.0, -1);
+		forward.heap.offer(start, guided ? potential(graph, start, start, dest) : 0.0);
+		backward.heap.offer(dest, guided ? -potential(graph, dest, start, dest) : 0.0);
+		double best = start == dest ? 0.0 : Double.POSITIVE_INFINITY;
+		int meet = start == dest ? start : -1;
+
+		while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+			if (forward.heap.peekKey() + backward.heap.peekKey() >= best)
+				break;  // no unsettled node can lie on a shorter path
+
+			// expand whichever side has the smaller key
+			boolean forwards = forward.heap.peekKey() <= backward.heap.peekKey();
+			Frontier side = forwards ? forward : backward;
+			Frontier other = forwards ? backward : forward;
+			int node = side.heap.poll();
+			settledCount++;
+			double base = side.distance(node);
+
+			int first = forwards ? graph.firstEdge(node) : graph.firstReverseEdge(node);
+			int end = forwards ? graph.endEdge(node) : graph.endReverseEdge(node);
+			for (int e = first; e < end; e++) {
+				int next = forwards ? graph.getTarget(e) : graph.getSource(e);
+				double cost = base + (forwards ? graph.getWeight(e) : graph.getReverseWeight(e));
+				if (cost < side.distance(next)) {
+					side.set(next, cost, node);
+					double offset = guided ? potential(graph, next, start, dest) : 0.0;
+					side.heap.offer(next, forwards ? cost + offset : cost - offset);
+				}
+				// remember the shortest complete path through next
+				double total = side.distance(next) + other.distance(next);
+				if (total < best) {
+					best = total;
+					meet = next;
+				}
+			}
+		}
+		forward.heap.clear();
+		backward.heap.clear();
+		return meet;
+	}
+
+	// returns the average of the estimated distance from node to dest and the negated
+	// estimated distance from start to node
+	private double potential(CompactGraph graph, int node, int start, int dest) {
+		return (graph.estimate(node, dest) - graph.estimate(start, node)) / 2;
+	}
+
+	// rebuilds the edge list through meet from the search's predecessors
+	private List<Edge<Location>> buildPath(CompactGraph graph, int meet) {
+		int length = collectRoute(meet);
+		return graph.toEdges(route, length);
+	}
+
+	// fills route with the node ids through meet by walking its forward predecessors back to
+	// the start and its backward predecessors on to the destination, returning the count
+	private int collectRoute(int meet) {
+		int head = 0, tail = 0;
+		for (int n = meet; n != -1; n = forward.parent(n))
+			head++;
+		for (int n = backward.parent(meet); n != -1; n = backward.parent(n))
+			tail++;
+		int length = head + tail;
+		if (route.length < length)
+			route = new int[Math.max(length, 2 * route.length)];
+
+		int i = head;
+		for (int n = meet; n != -1; n = forward.parent(n))
+			route[--i] = n;
+		i = head;
+		for (int n = backward.parent(meet); n != -1; n = backward.parent(n))
+			route[i++] = n;
+		return length;
+	}
+
+	/*
+	 * Frontier holds one direction of a search: the best known distance and predecessor of
+	 * every node and the queue of nodes still to be settled. An entry is only valid if its
+	 * stamp matches the current search's epoch, so starting a search is a counter increment
+	 * rather than a pass over the entries the last search touched
+	 */
+	private static class Frontier {
+		private double[] distance;  // best known distance from the search's origin, by node id
+		private int[] predecessor;  // previous node id on the best known path, -1 if none
+		private int[] stamp;  // the epoch in which each id's entries were last set
+		private int epoch;
+		private final IndexedHeap heap;
+
+		private Frontier() {
+			distance = new double[0];
+			predecessor = new int[0];
+			stamp = new int[0];
+			epoch = 0;
+			heap = new IndexedHeap(0);
+		}
+
+		// returns node's best known distance in this search, infinite if it was never reached
+		private double distance(int node) {
+			return stamp[node] == epoch ? distance[node] : Double.POSITIVE_INFINITY;
+		}
+
+		// returns node's predecessor in this search, or -1 if the search never reached it
+		private int parent(int node) {
+			if (node >= stamp.length || stamp[node] != epoch)
+				return -1;
+			return predecessor[node];
+		}
+
+		// records a new best distance for node
+		private void set(int node, double cost, int parent) {
+			stamp[node] = epoch;
+			distance[node] = cost;
+			predecessor[node] = parent;
+		}
+
+		// grows the workspace to fit size nodes and starts a new epoch, invalidating every
+		// entry set by earlier searches
+		private void prepare(int size) {
+			if (stamp.length < size) {
+				distance = new double[size];
+				predecessor = new int[size];
+				stamp = new int[size];
+				epoch = 0;
+				heap.ensureCapacity(size);
+			}
+			if (epoch == Integer.MAX_VALUE) {
+				Arrays.fill(stamp, 0);  // stamps would repeat, so clear them once in 2^31
+				epoch = 0;
+			}
+			epoch++;
+		}
+	}
+}
@@ -0,0 +1,405 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * PathsParser reads a _paths.dat file for a MapGraph. The file is a list of parent lines
+ * "x,y", each followed by one child line "\tx,y: length" per edge leaving it, and every edge
+ * is added in both directions. The file is cut into chunks of about CHUNK_SIZE bytes, each
+ * starting on a parent line, which are read into their own byte arrays and parsed in parallel
+ * straight from those bytes into arrays of coordinates, without creating a String per line or
+ * number. The file is read rather than memory mapped, since a mapping keeps the file locked on
+ * some systems until it is garbage collected, and FileWriter must be able to replace it; the
+ * file is closed before the constructor returns. addTo then adds the chunks to a graph in file
+ * order on the calling thread, so the graph is built exactly as a line by line reader would
+ * build it. Numbers of up to 15 or so significant digits are converted exactly with one
+ * multiplication or division; longer ones, such as most edge lengths, are handed to
+ * Double.parseDouble
+ */
+public class PathsParser {
+	private static final int CHUNK_SIZE = 1 << 22;  // target bytes per chunk, 4MB
+	private static final int WINDOW = 1 << 13;  // bytes read at once looking for a chunk's end
+	private static final int MAX_CHUNK = Integer.MAX_VALUE - 8;  // longest array every VM allows
+	private static final long MAX_EXACT = 1L << 53;  // largest mantissa every double holds
+	private static final double[] POWERS = new double[23];  // the powers of ten doubles hold
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+	private final Chunk[] chunks;  // the file's parsed chunks, in file order
+	private final int lines;
+	static {
+		POWERS[0] = 1;
+		for (int i = 1; i < POWERS.length; i++)
+			POWERS[i] = POWERS[i - 1] * 10;
+	}
+
+	/**
+	 * Parses a paths file on the common ForkJoinPool
+	 * @param filename: The path of the file to parse
+	 * @throws IOException Indicates the file could not be read or is malformed
+	 */
+	public PathsParser(String filename) throws IOException {
+		this(filename, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Parses a paths file
+	 * @param filename: The path of the file to parse
+	 * @param pool: The pool chunks are parsed on
+	 * @throws IOException Indicates the file could not be read or is malformed
+	 */
+	public PathsParser(String filename, ForkJoinPool pool) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(filename, "r");
+		try {
+			// cut the file before the parent line following every CHUNK_SIZE bytes
+			FileChannel channel = in.getChannel();
+			long length = channel.size();
+			long[] starts = new long[(int) (length / CHUNK_SIZE) + 2];
+			int count = 0;
+			for (long start = 0; start < length;
+					start = nextParent(channel, start + CHUNK_SIZE, length))
+				starts[count++] = start;
+			starts[count] = length;
+			chunks = new Chunk[count];
+			for (int i = 0; i < count; i++) {
+				if (starts[i + 1] - starts[i] > MAX_CHUNK)
+					throw new IOException(filename + ": parent line at byte " + starts[i]
+							+ " has too many children to parse");
+				chunks[i] = new Chunk(channel, starts[i], starts[i + 1]);
+			}
+			if (count == 1)
+				chunks[0].parse();  // too small to be worth handing to the pool
+			else if (count > 1)
+				pool.invoke(new Chunks(chunks, 0, count));
+		} finally {
+			in.close();
+		}
+
+		int total = 0;
+		for (Chunk c: chunks) {
+			if (c.failure != null)
+				throw new IOException(filename + ": " + c.failure.getMessage(), c.failure);
+			if (c.error != null)
+				throw new IOException(filename + ": " + c.error);
+			total += c.lines;
+		}
+		lines = total;
+	}
+
+	/**
+	 * Returns the number of lines parsed
+	 * @return the number of parent and child lines in the file, not counting blank lines
+	 */
+	public int getLineCount() {
+		return lines;
+	}
+
+	/**
+	 * Adds every node and edge in the file to graph, in the order they appear in the file.
+	 * Nodes already in graph, such as building entrances, are reused
+	 * @param graph: The graph to add to
+	 * @modifies graph
+	 */
+	public void addTo(MapGraph graph) {
+		for (Chunk c: chunks)
+			c.addTo(graph);
+	}
+
+	// returns the offset of the first parent line starting at or after position, which is
+	// past the start of the file, or length if there is none
+	private static long nextParent(FileChannel channel, long position, long length)
+			throws IOException {
+		ByteBuffer window = ByteBuffer.allocate(WINDOW);
+		long i = position - 1;  // the byte before position tells whether a line starts there
+		boolean lineStart = false;
+		while (i < length) {
+			window.clear();
+			read(channel, window, i);
+			window.flip();
+			if (!window.hasRemaining())
+				throw new EOFException("file ended at byte " + i + " while being parsed");
+			while (window.hasRemaining()) {
+				byte b = window.get();
+				if (lineStart && b != '\t')
+					return i;
+				lineStart = b == '\n';
+				i++;
+			}
+		}
+		return length;
+	}
+
+	// reads from channel starting at position until buffer is full or the file ends, without
+	// moving the channel's position, so any number of threads may read at once
+	private static void read(FileChannel channel, ByteBuffer buffer, long position)
+			throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position);
+			if (n < 0)
+				return;
+			position += n;
+		}
+	}
+
+	/*
+	 * Chunk parses the lines in one part of a paths file into arrays, and later adds them to
+	 * a graph. Parsing touches nothing shared, so chunks may be parsed on any threads
+	 *
+	 * Abstraction function: parent i is at parents[2i], parents[2i + 1], and its children are
+	 * children[3j], children[3j + 1] with edge length children[3j + 2] for firstChild[i] <= j
+	 * < firstChild[i + 1]
+	 *
+	 * Representation invariant: firstChild[0] == 0 and firstChild is nondecreasing up to
+	 * firstChild[parentCount] == childCount
+	 */
+	private static class Chunk {
+		private final FileChannel source;
+		private final long from, to;  // the bytes of the file in this chunk
+		private byte[] bytes;
+		private double[] parents, children;
+		private int[] firstChild;
+		private int parentCount, childCount, lines;
+		private double value;  // the number last read by number
+		private String error;  // the first malformed line, if any
+		private IOException failure;  // why the chunk could not be read, if it could not
+
+		private Chunk(FileChannel source, long from, long to) {
+			this.source = source;
+			this.from = from;
+			this.to = to;
+		}
+
+		// reads and parses every line of the chunk, stopping at the first malformed one
+		private void parse() {
+			int size = (int) (to - from);
+			bytes = new byte[size];
+			ByteBuffer target = ByteBuffer.wrap(bytes);
+			try {
+				read(source, target, from);
+			} catch (IOException e) {
+				failure = e;
+			}
+			if (failure == null && target.hasRemaining())
+				failure = new EOFException("file ended at byte " + (from + target.position())
+						+ " while being parsed");
+			if (failure != null) {
+				bytes = null;
+				return;
+			}
+			parents = new double[64];
+			children = new double[96];
+			firstChild = new int[33];
+			try {
+				int start = 0;
+				while (start < size) {
+					int end = start;
+					while (end < size && bytes[end] != '\n')
+						end++;
+					line(start, end);
+					start = end + 1;
+				}
+			} catch (IllegalArgumentException e) {
+				error = e.getMessage();
+			}
+			bytes = null;
+			firstChild[parentCount] = childCount;
+		}
+
+		// parses the line from start up to end, a parent if it does not start with a tab
+		private void line(int start, int end) {
+			if (end > start && bytes[end - 1] == '\r')
+				end--;
+			if (blank(start, end))
+				return;
+			lines++;
+			if (bytes[start] != '\t') {
+				if (parentCount * 2 == parents.length)
+					parents = Arrays.copyOf(parents, parents.length * 2);
+				if (parentCount + 1 == firstChild.length)
+					firstChild = Arrays.copyOf(firstChild, firstChild.length * 2);
+				firstChild[parentCount] = childCount;
+				int i = expect(number(start, end), end, ',');
+				parents[2 * parentCount] = value;
+				i = number(i, end);
+				parents[2 * parentCount + 1] = value;
+				parentCount++;
+				end(i, start, end);
+			} else {
+				if (parentCount == 0)
+					throw malformed("child line before any parent", start, end);
+				if (childCount * 3 == children.length)
+					children = Arrays.copyOf(children, children.length * 2);
+				int i = expect(number(skipSpaces(start, end), end), end, ',');
+				children[3 * childCount] = value;
+				i = expect(number(i, end), end, ':');
+				children[3 * childCount + 1] = value;
+				i = number(skipSpaces(i, end), end);
+				children[3 * childCount + 2] = value;
+				childCount++;
+				end(i, start, end);
+			}
+		}
+
+		// reads the number at position into value, returning the position after it
+		private int number(int position, int end) {
+			int i = position;
+			boolean negative = false;
+			if (i < end && (bytes[i] == '-' || bytes[i] == '+'))
+				negative = bytes[i++] == '-';
+			long mantissa = 0;
+			int digits = 0, scale = 0;  // significant digits, and the power of ten they lack
+			boolean any = false;
+			for (; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+				any = true;
+				if (mantissa != 0 || bytes[i] != '0')
+					digits++;
+				if (digits <= 18)
+					mantissa = mantissa * 10 + (bytes[i] - '0');
+				else
+					scale++;  // past what a long holds; only the fallback is exact
+			}
+			if (i < end && bytes[i] == '.') {
+				for (i++; i < end && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+					any = true;
+					if (mantissa != 0 || bytes[i] != '0')
+						digits++;
+					if (digits <= 18) {
+						mantissa = mantissa * 10 + (bytes[i] - '0');
+						scale--;
+					}
+				}
+			}
+			if (i < end && (bytes[i] == 'E' || bytes[i] == 'e')) {
+				int j = i + 1, exponent = 0;
+				boolean negativeExponent = false;
+				if (j < end && (bytes[j] == '-' || bytes[j] == '+'))
+					negativeExponent = bytes[j++] == '-';
+				int first = j;
+				for (; j < end && bytes[j] >= '0' && bytes[j] <= '9' && exponent < 10000; j++)
+					exponent = exponent * 10 + (bytes[j] - '0');
+				if (j == first)
+					throw malformed("bad exponent", position, end);
+				scale += negativeExponent ? -exponent : exponent;
+				i = j;
+			}
+			if (!any)
+				return fallback(position, end);  // such as NaN or Infinity, or not a number
+			if (mantissa == 0) {
+				value = negative ? -0.0 : 0.0;
+			} else if (digits <= 18 && mantissa <= MAX_EXACT && scale >= -22 && scale <= 22) {
+				// both operands are exact, so the one rounding matches Double.parseDouble
+				value = scale < 0 ? mantissa / POWERS[-scale] : mantissa * POWERS[scale];
+				if (negative)
+					value = -value;
+			} else {
+				value = Double.parseDouble(text(position, i));
+			}
+			return i;
+		}
+
+		// reads the token at position with Double.parseDouble, returning the position after it
+		private int fallback(int position, int end) {
+			int i = position;
+			while (i < end && bytes[i] != ',' && bytes[i] != ':' && bytes[i] != ' ' &&
+				   bytes[i] != '\t')
+				i++;
+			try {
+				value = Double.parseDouble(text(position, i));
+			} catch (NumberFormatException e) {
+				throw malformed("bad number", position, end);
+			}
+			return i;
+		}
+
+		// returns the position after c, which must be at position
+		private int expect(int position, int end, char c) {
+			if (position >= end || bytes[position] != c)
+				throw malformed("expected '" + c + "'", position, end);
+			return position + 1;
+		}
+
+		// checks that only spaces remain from position up to the line's end
+		private void end(int position, int start, int end) {
+			if (!blank(position, end))
+				throw malformed("unexpected text", start, end);
+		}
+
+		// returns the first position at or after position that is not a space or tab
+		private int skipSpaces(int position, int end) {
+			while (position < end && (bytes[position] == ' ' || bytes[position] == '\t'))
+				position++;
+			return position;
+		}
+
+		// returns whether the bytes from start up to end are all spaces or tabs
+		private boolean blank(int start, int end) {
+			return skipSpaces(start, end) == end;
+		}
+
+		// returns the bytes from start up to end as a String
+		private String text(int start, int end) {
+			return new String(bytes, start, end - start, ASCII);
+		}
+
+		// returns an exception describing the line containing position
+		private IllegalArgumentException malformed(String problem, int position, int end) {
+			int start = position;
+			while (start > 0 && bytes[start - 1] != '\n')
+				start--;
+			return new IllegalArgumentException(problem + " at byte " + (from + position) +
+					": " + text(start, end).trim());
+		}
+
+		// adds the chunk's nodes and edges to graph in the order they appeared in the file
+		private void addTo(MapGraph graph) {
+			for (int p = 0; p < parentCount; p++) {
+				Node<Location> parent = node(graph, parents[2 * p], parents[2 * p + 1]);
+				for (int c = firstChild[p]; c < firstChild[p + 1]; c++) {
+					Node<Location> child = node(graph, children[3 * c], children[3 * c + 1]);
+					graph.addEdge(parent, child, children[3 * c + 2]);
+					graph.addEdge(child, parent, children[3 * c + 2]);
+				}
+			}
+		}
+
+		// returns the node of graph at x, y, adding a path node there if there is none
+		private static Node<Location> node(MapGraph graph, double x, double y) {
+			Node<Location> n = graph.getNode(x, y);
+			if (n == null) {
+				n = new Node<Location>(x, y);
+				graph.add(n);
+			}
+			return n;
+		}
+	}
+
+	/*
+	 * Chunks parses a range of chunks, splitting it among the pool's threads
+	 */
+	private static class Chunks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Chunk[] chunks;
+		private final int from, to;
+
+		private Chunks(Chunk[] chunks, int from, int to) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Chunks(chunks, from, middle), new Chunks(chunks, middle, to));
+				return;
+			}
+			chunks[from].parse();
+		}
+	}
+}
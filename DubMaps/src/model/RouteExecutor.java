@@ -0,0 +1,191 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.MapGraph.RoutingMode;
+
+/*
+ * RouteExecutor answers many route queries at once against a snapshot published by a map, so
+ * queries may run on any number of threads while the map goes on being edited. Each query
+ * borrows a PathFinder from a shared pool and returns it when done, so the search arrays are
+ * allocated once per concurrently running query rather than once per query or per thread.
+ * Queries can be run on the calling thread, including threads the caller manages itself, or
+ * submitted to the executor's workers. Changes published later are not seen; create a new
+ * executor to route on them
+ *
+ * Abstraction function: RouteExecutor is the graph as of version, searched with mode, with
+ * idle PathFinders waiting in finders
+ *
+ * Representation invariant: graph is not null, and hierarchy is not null if and only if mode
+ * is CONTRACTION_HIERARCHY
+ */
+public class RouteExecutor {
+	private static final boolean DEBUG = true;
+	private final CompactGraph graph;
+	private final ContractionHierarchy hierarchy;  // the graph's hierarchy, if mode uses one
+	private final RoutingMode mode;
+	private final Queue<PathFinder> finders;  // workspaces not in use by a query
+	private final ExecutorService workers;
+
+	/**
+	 * Starts a fixed number of worker threads to route on snapshot
+	 * @param snapshot: The map to route through, as published by MapGraph.publish
+	 * @param mode: The search each query runs
+	 * @param threads: The number of worker threads
+	 * @throws IllegalArgumentException if snapshot or mode is null or threads < 1
+	 */
+	public RouteExecutor(MapSnapshot snapshot, RoutingMode mode, int threads) {
+		this(snapshot, mode, newWorkers(threads));
+	}
+
+	/**
+	 * Prepares to route on snapshot with the given workers, which may be any executor such
+	 * as one starting a thread per task. A CONTRACTION_HIERARCHY executor builds its own
+	 * hierarchy if snapshot was published without one
+	 * @param snapshot: The map to route through, as published by MapGraph.publish
+	 * @param mode: The search each query runs
+	 * @param workers: The executor submitted queries run on, shut down by shutdown
+	 * @throws IllegalArgumentException if any argument is null
+	 */
+	public RouteExecutor(MapSnapshot snapshot, RoutingMode mode, ExecutorService workers) {
+		if (snapshot == null || mode == null || workers == null)
+			throw new IllegalArgumentException("Null input");
+		graph = snapshot.getGraph();
+		if (mode != RoutingMode.CONTRACTION_HIERARCHY)
+			hierarchy = null;
+		else if (snapshot.getHierarchy() != null)
+			hierarchy = snapshot.getHierarchy();
+		else
+			hierarchy = new ContractionHierarchy(graph);
+		this.mode = mode;
+		this.workers = workers;
+		finders = new ConcurrentLinkedQueue<PathFinder>();
+		checkRep();
+	}
+
+	/**
+	 * Returns the version of the map the snapshot was published at
+	 * @return the map's version when its snapshot was published
+	 */
+	public int getVersion() {
+		return graph.getVersion();
+	}
+
+	/**
+	 * Returns the shortest path from start to dest, searching on the calling thread. Safe to
+	 * call from any number of threads at once
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @return a list of edges leading from start to dest, null if none or if either node was
+	 * 		   not in the map when the snapshot was published
+	 * @throws IllegalArgumentException if start or dest is null
+	 */
+	public List<Edge<Location>> route(Node<Location> start, Node<Location> dest) {
+		if (start == null || dest == null)
+			throw new IllegalArgumentException("Null input");
+		if (start.equals(dest))
+			return new ArrayList<Edge<Location>>();  // already at the destination
+		int from = graph.getId(start), to = graph.getId(dest);
+		if (from < 0 || to < 0)
+			return null;
+
+		PathFinder finder = finders.poll();
+		if (finder == null)
+			finder = new PathFinder();  // every pooled workspace is busy
+		try {
+			if (hierarchy != null)
+				return finder.getPath(hierarchy, from, to);
+			return finder.getPath(graph, from, to, mode);
+		} finally {
+			finders.offer(finder);
+		}
+	}
+
+	/**
+	 * Queues a search for the shortest path from start to dest on the workers
+	 * @param start: The start node
+	 * @param dest: The destination node
+	 * @return the route as route would return it, once found
+	 * @throws IllegalArgumentException if start or dest is null
+	 */
+	public Future<List<Edge<Location>>> submit(Node<Location> start, Node<Location> dest) {
+		return workers.submit(query(start, dest));
+	}
+
+	/**
+	 * Finds the shortest path between each pair of nodes on the workers, waiting until
+	 * every route is found
+	 * @param pairs: Start and destination nodes, as two element arrays
+	 * @return the route for each pair as route would return it, in the order of pairs
+	 * @throws IllegalArgumentException if any node is null
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public List<List<Edge<Location>>> routeAll(List<Node<Location>[]> pairs)
+			throws InterruptedException {
+		List<Callable<List<Edge<Location>>>> queries =
+				new ArrayList<Callable<List<Edge<Location>>>>(pairs.size());
+		for (Node<Location>[] p: pairs)
+			queries.add(query(p[0], p[1]));
+		List<List<Edge<Location>>> result = new ArrayList<List<Edge<Location>>>(pairs.size());
+		for (Future<List<Edge<Location>>> f: workers.invokeAll(queries)) {
+			try {
+				result.add(f.get());
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());  // route throws nothing checked
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Stops the workers once queued queries finish. Routes may still be found on calling
+	 * threads with route
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+
+	// returns a fixed pool of the given number of daemon worker threads
+	private static ExecutorService newWorkers(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "route worker " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	// returns a task finding the route from start to dest
+	private Callable<List<Edge<Location>>> query(final Node<Location> start,
+			final Node<Location> dest) {
+		if (start == null || dest == null)
+			throw new IllegalArgumentException("Null input");
+		return new Callable<List<Edge<Location>>>() {
+			public List<Edge<Location>> call() {
+				return route(start, dest);
+			}
+		};
+	}
+
+	// verifies the representation invariant
+	private void checkRep() {
+		if (DEBUG) {
+			assert (graph != null);
+			assert ((hierarchy != null) == (mode == RoutingMode.CONTRACTION_HIERARCHY));
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * RoutingService answers routing questions about one map without a display, for use from a
+ * server or batch job as well as the map programs. Buildings are named by their abbreviated
+ * or full names, and points by map pixel coordinates. It uses no AWT or Swing classes, so it
+ * runs in a headless JVM. Routes, buildings and nearest points come from the map's published
+ * snapshot, so they may be asked for from any number of threads, including while the map is
+ * being edited on another. A map loaded by name whose compiled map is up to date is routed on
+ * a snapshot read straight from the compiled map, and its MapGraph is only built if getGraph
+ * is called
+ *
+ * Abstraction function: RoutingService is the map whose latest snapshot is graph's if graph
+ * has been built and loaded otherwise, with entrances mapping each building name to that
+ * building's entrance nodes in the snapshot entrances.snapshot
+ *
+ * Representation invariant: graph or loaded is not null, mapName is not null if graph is, and
+ * entrances is not null and every node in entrances is in entrances.snapshot
+ */
+public class RoutingService {
+	private static final boolean DEBUG = true;
+	private final String mapName;  // the name of the map's files, or null if given a graph
+	private final MapSnapshot loaded;  // read from the compiled map, or null if not
+	private volatile MapGraph graph;  // the map, or null until needed if loaded is not null
+	private volatile Entrances entrances;  // replaced whole, never changed once built
+
+	/**
+	 * Loads the map named mapName from the data directory. If its compiled map is up to date
+	 * and no edits are journaled over it, routes on a snapshot read from the compiled map
+	 * without building a MapGraph
+	 * @param mapName: The name of the map files, such as "campus"
+	 */
+	public RoutingService(String mapName) {
+		this(mapName, FileParser.readSnapshot(mapName, MapGraph.RoutingMode.DIJKSTRA));
+	}
+
+	// answers questions about the map named mapName, parsing it unless loaded was read
+	private RoutingService(String mapName, MapSnapshot loaded) {
+		this.mapName = mapName;
+		this.loaded = loaded;
+		graph = loaded == null ? new FileParser(mapName).getGraph() : null;
+		entrances = new Entrances(getSnapshot());
+		checkRep();
+	}
+
+	/**
+	 * Constructs a RoutingService answering questions about graph
+	 * @param graph: The map to route through
+	 * @throws IllegalArgumentException if graph is null
+	 */
+	public RoutingService(MapGraph graph) {
+		if (graph == null)
+			throw new IllegalArgumentException("Null input");
+		mapName = null;
+		loaded = null;
+		this.graph = graph;
+		entrances = new Entrances(graph.getSnapshot());
+		checkRep();
+	}
+
+	/**
+	 * Returns the map this service routes through, parsing it if it was loaded as a snapshot
+	 * @return the map graph
+	 */
+	public MapGraph getGraph() {
+		MapGraph result = graph;
+		if (result == null) {
+			synchronized (this) {
+				if (graph == null)
+					graph = new FileParser(mapName).getGraph();
+				result = graph;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns every building entrance in the map
+	 * @return the locations of all building entrances
+	 */
+	public List<Location> getBuildings() {
+		return new ArrayList<Location>(getSnapshot().getBuildings());
+	}
+
+	/**
+	 * Returns the shortest route between two buildings, from whichever of start's entrances
+	 * to whichever of dest's entrances gives the shortest route
+	 * @param start: The abbreviated or full name of the building to start from
+	 * @param dest: The abbreviated or full name of the building to reach
+	 * @return a list of edges leading from start to dest, null if either building is unknown
+	 * 		   or there is no route
+	 * @throws IllegalArgumentException if start or dest is null
+	 */
+	public List<Edge<Location>> getRoute(String start, String dest) {
+		if (start == null || dest == null)
+			throw new IllegalArgumentException("Null input");
+		Entrances current = getEntrances();
+		List<Node<Location>> from = current.get(start), to = current.get(dest);
+		List<Edge<Location>> best = null;
+		double bestLength = Double.POSITIVE_INFINITY;
+		for (Node<Location> s: from) {
+			for (Node<Location> d: to) {
+				List<Edge<Location>> route = current.snapshot.getPath(s, d);
+				if (route != null && getLength(route) < bestLength) {
+					best = route;
+					bestLength = getLength(route);
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the shortest route between the path nodes nearest two points
+	 * @param startX: The x coordinate to start from, in map pixels
+	 * @param startY: The y coordinate to start from, in map pixels
+	 * @param destX: The x coordinate to reach, in map pixels
+	 * @param destY: The y coordinate to reach, in map pixels
+	 * @param maxDistance: The furthest a point may be from its nearest node
+	 * @return a list of edges leading between the nodes nearest each point, null if either
+	 * 		   point has no node within maxDistance or there is no route
+	 */
+	public List<Edge<Location>> getRoute(double startX, double startY, double destX,
+			double destY, int maxDistance) {
+		MapSnapshot snapshot = getSnapshot();
+		Node<Location> start = snapshot.getClosestNode((int) startX, (int) startY, maxDistance);
+		Node<Location> dest = snapshot.getClosestNode((int) destX, (int) destY, maxDistance);
+		if (start == null || dest == null)
+			return null;
+		return snapshot.getPath(start, dest);
+	}
+
+	/**
+	 * Returns the length of the shortest route between two buildings
+	 * @param start: The abbreviated or full name of the building to start from
+	 * @param dest: The abbreviated or full name of the building to reach
+	 * @return the route's length in map pixels, or Double.POSITIVE_INFINITY if there is none
+	 * @throws IllegalArgumentException if start or dest is null
+	 */
+	public double getRouteLength(String start, String dest) {
+		List<Edge<Location>> route = getRoute(start, dest);
+		return route != null ? getLength(route) : Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns the building entrance nearest a point
+	 * @param x: The x coordinate, in map pixels
+	 * @param y: The y coordinate, in map pixels
+	 * @param maxDistance: The furthest the entrance may be from the point
+	 * @return the nearest entrance's location, null if none is within maxDistance
+	 */
+	public Location getNearestBuilding(double x, double y, int maxDistance) {
+		Node<Location> n = getSnapshot().getClosestBuilding((int) x, (int) y, maxDistance);
+		return n != null ? n.getLocation() : null;
+	}
+
+	/**
+	 * Returns the total length of a route
+	 * @param route: A list of edges
+	 * @return the sum of the edges' lengths
+	 */
+	public static double getLength(List<Edge<Location>> route) {
+		double length = 0;
+		for (Edge<Location> e: route)
+			length += e.getLength();
+		return length;
+	}
+
+	// returns the latest published snapshot of the map
+	private MapSnapshot getSnapshot() {
+		MapGraph current = graph;
+		return current != null ? current.getSnapshot() : loaded;
+	}
+
+	// returns the entrances of the latest published snapshot, indexing them if it is new
+	private Entrances getEntrances() {
+		Entrances current = entrances;
+		MapSnapshot snapshot = getSnapshot();
+		if (current.snapshot != snapshot) {
+			current = new Entrances(snapshot);  // racing threads build equal indexes
+			entrances = current;
+			checkRep();
+		}
+		return current;
+	}
+
+	// verifies the representation invariant
+	private void checkRep() {
+		if (DEBUG) {
+			assert (graph != null || loaded != null);
+			assert (graph != null || mapName != null);
+			assert (entrances != null);
+		}
+	}
+
+	/*
+	 * Entrances indexes the entrance nodes of one snapshot's buildings under both of each
+	 * building's names
+	 */
+	private static class Entrances {
+		private final MapSnapshot snapshot;
+		private final Map<String, List<Node<Location>>> byName;
+
+		private Entrances(MapSnapshot snapshot) {
+			this.snapshot = snapshot;
+			byName = new HashMap<String, List<Node<Location>>>();
+			for (Node<Location> n: snapshot.getEntrances()) {
+				Location b = n.getLocation();
+				add(b.getName(), n);
+				if (!b.getLongName().equals(b.getName()))
+					add(b.getLongName(), n);
+			}
+		}
+
+		// returns the entrance nodes of the building named name, empty if there are none
+		private List<Node<Location>> get(String name) {
+			List<Node<Location>> result = byName.get(name);
+			return result != null ? result : new ArrayList<Node<Location>>();
+		}
+
+		// adds n to the entrances of the building named name
+		private void add(String name, Node<Location> n) {
+			List<Node<Location>> list = byName.get(name);
+			if (list == null) {
+				list = new ArrayList<Node<Location>>(2);
+				byName.put(name, list);
+			}
+			list.add(n);
+		}
+	}
+}
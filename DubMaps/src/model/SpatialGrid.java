@@ -0,0 +1,171 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Abstraction function: SpatialGrid is a set of nodes bucketed by location into square cells
+ * of cellSize pixels. The cell at column cx and row cy holds every node whose x coordinate is in
+ * [cx * cellSize, (cx + 1) * cellSize) and whose y coordinate is in [cy * cellSize,
+ * (cy + 1) * cellSize), and is stored under the key returned by key(cx, cy)
+ *
+ * Representation invariant: every node is stored in exactly one cell, the one containing
+ * its location, and no cell list is empty
+ */
+public class SpatialGrid {
+
+	private final Map<Long, List<Node<Location>>> cells;
+	private final double cellSize;
+	private int size;
+
+	/**
+	 * Creates an empty grid
+	 * @param cellSize: The width and height of each cell, in map pixels
+	 * @requires cellSize > 0
+	 */
+	public SpatialGrid(double cellSize) {
+		this.cellSize = cellSize;
+		cells = new HashMap<Long, List<Node<Location>>>();
+		size = 0;
+	}
+
+	/**
+	 * Adds node to the cell containing its location
+	 * @param node: The node to be added
+	 * @requires node is not null and not already in the grid
+	 * @modifies this
+	 */
+	public void add(Node<Location> node) {
+		long key = key(cell(node.getLocation().getX()), cell(node.getLocation().getY()));
+		List<Node<Location>> list = cells.get(key);
+		if (list == null) {
+			list = new ArrayList<Node<Location>>(4);
+			cells.put(key, list);
+		}
+		list.add(node);
+		size++;
+	}
+
+	/**
+	 * Returns the number of nodes in the grid
+	 * @return the node count
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the closest node to x,y that is less than maxDistance away, or null if none are
+	 * close enough. Only cells overlapping the search radius are examined
+	 * @param x: The x coordinate to be searched for
+	 * @param y: The y coordinate to be searched for
+	 * @param maxDistance: The distance every result must be closer than
+	 * @return The closest node to x,y within maxDistance, null if none found
+	 */
+	public Node<Location> getClosest(double x, double y, double maxDistance) {
+		Node<Location> closest = null;
+		double best = maxDistance * maxDistance;  // compare squared distances
+		int minX = cell(x - maxDistance), maxX = cell(x + maxDistance);
+		int minY = cell(y - maxDistance), maxY = cell(y + maxDistance);
+
+		// scan every occupied cell instead if the radius covers more cells than exist
+		if (((long) maxX - minX + 1) * ((long) maxY - minY + 1) > cells.size()) {
+			for (List<Node<Location>> list: cells.values()) {
+				Node<Location> n = closest(list, x, y, best);
+				if (n != null) {
+					closest = n;
+					best = squaredDistance(n, x, y);
+				}
+			}
+			return closest;
+		}
+
+		for (int cx = minX; cx <= maxX; cx++) {
+			for (int cy = minY; cy <= maxY; cy++) {
+				List<Node<Location>> list = cells.get(key(cx, cy));
+				if (list == null)
+					continue;
+				Node<Location> n = closest(list, x, y, best);
+				if (n != null) {
+					closest = n;
+					best = squaredDistance(n, x, y);
+				}
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Adds every node located inside the rectangle from minX, minY to maxX, maxY, edges
+	 * included, to result. Only cells overlapping the rectangle are examined
+	 * @param minX: The rectangle's left edge
+	 * @param minY: The rectangle's top edge
+	 * @param maxX: The rectangle's right edge
+	 * @param maxY: The rectangle's bottom edge
+	 * @param result: The list the nodes are added to
+	 * @modifies result
+	 */
+	public void getInRange(double minX, double minY, double maxX, double maxY,
+			List<Node<Location>> result) {
+		if (minX > maxX || minY > maxY)
+			return;
+		int fromX = cell(minX), toX = cell(maxX), fromY = cell(minY), toY = cell(maxY);
+
+		// scan every occupied cell instead if the rectangle covers more cells than exist
+		if (((long) toX - fromX + 1) * ((long) toY - fromY + 1) > cells.size()) {
+			for (List<Node<Location>> list: cells.values())
+				inRange(list, minX, minY, maxX, maxY, result);
+			return;
+		}
+		for (int cx = fromX; cx <= toX; cx++) {
+			for (int cy = fromY; cy <= toY; cy++) {
+				List<Node<Location>> list = cells.get(key(cx, cy));
+				if (list != null)
+					inRange(list, minX, minY, maxX, maxY, result);
+			}
+		}
+	}
+
+	// adds the nodes in list inside the rectangle from minX, minY to maxX, maxY to result
+	private static void inRange(List<Node<Location>> list, double minX, double minY,
+			double maxX, double maxY, List<Node<Location>> result) {
+		for (Node<Location> n: list) {
+			double x = n.getLocation().getX(), y = n.getLocation().getY();
+			if (x >= minX && x <= maxX && y >= minY && y <= maxY)
+				result.add(n);
+		}
+	}
+
+	// returns the node in list closest to x,y whose squared distance is less than best,
+	// or null if there is none
+	private static Node<Location> closest(List<Node<Location>> list, double x, double y,
+			double best) {
+		Node<Location> result = null;
+		for (Node<Location> n: list) {
+			double d = squaredDistance(n, x, y);
+			if (d < best) {
+				result = n;
+				best = d;
+			}
+		}
+		return result;
+	}
+
+	// returns the squared distance from node to x,y
+	private static double squaredDistance(Node<Location> node, double x, double y) {
+		double dx = node.getLocation().getX() - x, dy = node.getLocation().getY() - y;
+		return dx * dx + dy * dy;
+	}
+
+	// returns the index of the row or column of cells containing coordinate
+	private int cell(double coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	// packs a cell's column and row into one key
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xffffffffL);
+	}
+}
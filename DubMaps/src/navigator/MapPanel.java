@@ -7,6 +7,7 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,11 +15,18 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 import controller.Display;
+import controller.LabelCache;
+import controller.LabelPlacer;
 import controller.MapManager;
+import controller.PaintCounter;
+import controller.RouteCache;
+import controller.RouteLayer;
+import controller.TileLayer;
 import controller.UIManager;
+import model.EditJournal;
+import model.FileParser;
 import model.MapGraph;
 import model.Location;
-import model.FileParser;
 import model.Node;
 import view.MapScrollPane;
 
@@ -32,27 +40,57 @@ import view.MapScrollPane;
 public class MapPanel extends JPanel {
 	private final int OFFSET = 2; // outlined text border width
 	private final int MAX_DISTANCE = 100; // max acceptable click distance from target
+	// display pixels a label or marker may extend from its location, for culling
+	protected final int LABEL_MARGIN = 100, MARKER_MARGIN = 10;
 	private Node<Location> pathStart, pathDest;
 	private int[] closestEntrance;
 	private boolean path;
 	protected MapScrollPane parent;
 	protected MapManager map;
 	protected UIManager ui;
+	protected RouteCache route;
+	private RouteLayer routeLayer;
+	private TileLayer base;  // the map at the current zoom
+	private TileLayer overlay;  // the labels and entrance markers drawn over the route
 	protected MapGraph model;
+	protected PaintCounter counter;
+	protected LabelCache labelCache;
+	private LabelPlacer placer;  // the labels and markers not hidden by others at this zoom
+	protected boolean editsDeclined;  // whether the user chose not to load unsaved edits
 	
 	/**
 	 * Constructs a new MapPanel to display a map
 	 */
 	public MapPanel() {
-		FileParser parser = new FileParser(Display.getMapFile());
-		model = parser.getGraph();
+		String mapFile = Display.getMapFile();
+		editsDeclined = EditJournal.hasRecords(mapFile) && !confirmEdits();
+		model = new FileParser(mapFile, true, !editsDeclined).getGraph();
+		// bidirectional A* needs no preprocessing at startup
+		model.setRoutingMode(MapGraph.RoutingMode.BIDIRECTIONAL_A_STAR);
+		model.publish();
 		parent = null;
 		map = new MapManager(getWidth(), getHeight());
 		ui = new UIManager(map);
+		route = new RouteCache(ui);
+		routeLayer = new RouteLayer(route, 7, Color.blue);
+		base = new TileLayer(new TileLayer.Painter() {
+			public boolean paint(Graphics2D g, Rectangle area) {
+				return paintBase(g, area);
+			}
+		});
+		overlay = new TileLayer(new TileLayer.Painter() {
+			public boolean paint(Graphics2D g, Rectangle area) {
+				paintOverlay(g, area);
+				return true;
+			}
+		}, Transparency.TRANSLUCENT);
+		counter = new PaintCounter();
+		labelCache = new LabelCache(ui, OFFSET);
+		placer = new LabelPlacer(ui, labelCache, 6);
 		path = false;
 		pathStart = null;
 		pathDest = null;
-		closestEntrance = new int[2];
+		closestEntrance = new int[]{ -1, -1 };
 		repaint();
 		setVisible(true);
 	}	
@@ -91,13 +129,16 @@ public class MapPanel extends JPanel {
 	 */
 	public void updateDisplay(int width, int height) {
 		if (path) {
-			Rectangle bounds = ui.getPathBounds(model.getPath(pathStart, pathDest));
+			Rectangle bounds = route.getBounds(model, pathStart, pathDest);
 			map.zoomIn(parent.getWidth(), parent.getHeight(),
 					new Dimension(bounds.width, bounds.height));
 			setScrollCenter();
 		} else {
 			map.zoomOut(width, height);
 		}
+		// the highlighted entrance's position belongs to the old zoom
+		closestEntrance[0] = -1;
+		closestEntrance[1] = -1;
 		setPreferredSize(new Dimension(map.getWidth(), map.getHeight()));
 		repaint();
 		parent.scrollToCenter();
@@ -110,12 +151,12 @@ public class MapPanel extends JPanel {
 	public void setScrollCenter() {
 		// exit if a path is not drawn
 		if (pathStart == null || pathDest == null) { return; } 
-		Rectangle bounds = ui.getPathBounds(model.getPath(pathStart, pathDest));
+		Rectangle bounds = route.getBounds(model, pathStart, pathDest);
 		
 		// calculate the "percentage" that scrollBars should be set to, scaling 
 		// with respect to native image pixels
-		double x = ((bounds.x + (1.0 * bounds.width / 2)) / map.getMap().getWidth());
-		double y = ((bounds.y + (1.0 * bounds.height / 2)) / map.getMap().getHeight());
+		double x = ((bounds.x + (1.0 * bounds.width / 2)) / map.getNativeWidth());
+		double y = ((bounds.y + (1.0 * bounds.height / 2)) / map.getNativeHeight());
 		parent.setCenter(x, y);
 	}
 	
@@ -129,21 +170,20 @@ public class MapPanel extends JPanel {
 		x *= ui.scaleWidth();
 		y *= ui.scaleHeight();
 		Node<Location> n = model.getClosestBuilding(x, y, MAX_DISTANCE);
-		// quit if a the mouse if too far from a building, reset closestEntrance
+		int[] previous = closestEntrance.clone();
+		// reset closestEntrance if the mouse is too far from a building
 		if (n == null) { 
 			closestEntrance[0] = -1;
 			closestEntrance[1] = -1;
-			repaint();
-			return; 
-		}  
-		
-		// scale the coordinates of n to fit on screen
-		List<Location> temp = new ArrayList<Location>();
-		temp.add(n.getLocation());
-		int[] loc = ui.getBuildingEntrances(temp).get(0);
-		closestEntrance[0] = loc[0];
-		closestEntrance[1] = loc[1];
-		repaint();
+		} else {
+			// scale the coordinates of n to fit on screen
+			List<Location> temp = new ArrayList<Location>();
+			temp.add(n.getLocation());
+			int[] loc = ui.getBuildingEntrances(temp).get(0);
+			closestEntrance[0] = loc[0];
+			closestEntrance[1] = loc[1];
+		}
+		repaintMarker(previous, closestEntrance);
 	}
 	
 	/**
@@ -203,84 +243,127 @@ public class MapPanel extends JPanel {
 	}
 	
 	/**
-	 * Handles painting for mapPanel, displaying the map and ui components relevant to the
-	 * current state
+	 * Repaints only the areas under a highlighted marker before and after it moved, and
+	 * nothing if it did not move
+	 * @param previous: The marker's old display x y position, or -1, -1 if none was shown
+	 * @param current: The marker's new display x y position, or -1, -1 if none is shown
+	 */
+	protected void repaintMarker(int[] previous, int[] current) {
+		if (previous[0] == current[0] && previous[1] == current[1]) { return; }
+		if (previous[0] != -1 || previous[1] != -1)
+			repaint(new Rectangle(previous[0] - MARKER_MARGIN, previous[1] - MARKER_MARGIN,
+					2 * MARKER_MARGIN + 1, 2 * MARKER_MARGIN + 1));
+		if (current[0] != -1 || current[1] != -1)
+			repaint(new Rectangle(current[0] - MARKER_MARGIN, current[1] - MARKER_MARGIN,
+					2 * MARKER_MARGIN + 1, 2 * MARKER_MARGIN + 1));
+	}
+	
+	/**
+	 * Handles painting for mapPanel
 	 */
 	protected void paintComponent(Graphics g) {
-		Graphics2D g2d = (Graphics2D) g;
-		super.paintComponent(g2d);
+		super.paintComponent(g);
+		paintMap((Graphics2D) g);
+	}
+	
+	/**
+	 * Displays the map and ui components relevant to the current state from four layers,
+	 * bottom to top: the map, kept in tiles until the zoom changes; the route, kept in an
+	 * image until it changes; the labels and entrance markers, kept in clear tiles until the
+	 * zoom changes; and the highlighted buildings, which are drawn over them each time. Only
+	 * the area inside the clip is drawn
+	 * @param g2d: The component's graphics object
+	 */
+	protected void paintMap(Graphics2D g2d) {
+		Rectangle clip = g2d.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		counter.reset();
+		
+		// draw the map
+		base.draw(g2d, clip, map.getWidth(), map.getHeight(), model.getVersion(), this);
 		
 		// set graphics preferences
 		g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
 				RenderingHints.VALUE_TEXT_ANTIALIAS_LCD_HRGB);
 		g2d.setFont(ui.getFont());
 		
-		// update ui graphics
-		ui.setGraphics(g2d);
-		
-		//draw map image
-		int[] args = map.getImageArgs();
-		g2d.drawImage(map.getMap(), args[0], args[1], args[2], args[3],
-				args[4], args[5], args[6], args[7], null);
-		
 		// draw the path if it has been selected
-		g2d.setStroke(new BasicStroke(7, BasicStroke.JOIN_ROUND, BasicStroke.CAP_ROUND));
 		if (pathStart != null && pathDest != null) {
-			g2d.setColor(Color.blue);
-			for (int[] i: ui.getPath(model.getPath(pathStart, pathDest)))
-				g2d.drawLine(i[0], i[1], i[2], i[3]);
+			counter.count(routeLayer.draw(g2d, clip, model, pathStart, pathDest, this),
+					route.getSegments(model, pathStart, pathDest).size());
 		}
 		
-		// Print building labels
-		for(String[] s: ui.getBuildingLabels(model.getLabels())) {
-			int x = Integer.parseInt(s[1]);
-			int y = Integer.parseInt(s[2]);
-		    // outline text in black
-			g2d.setColor(Color.black);
-			g2d.drawString(s[0], x - OFFSET, y - OFFSET);
-			g2d.drawString(s[0], x + OFFSET, y + OFFSET);
-			g2d.drawString(s[0], x + OFFSET, y - OFFSET);
-			g2d.drawString(s[0], x - OFFSET, y + OFFSET);
-			// print the label 
-			g2d.setColor(Color.white);
-			g2d.drawString(s[0], x, y);
-		}
+		// draw the labels and entrance markers over the path
+		overlay.draw(g2d, clip, map.getWidth(), map.getHeight(), model.getVersion(), this);
+		if (counter.isShown())
+			counter.count(0, model.getLabels().size() + model.getBuildings().size());
 		
-		// Print small markers at each building entrance and highlight the closest
-		// one to the mouse pointer
-		g2d.setStroke(new BasicStroke(1, BasicStroke.JOIN_ROUND, BasicStroke.CAP_ROUND));
-		int offset = 5, size = 2 * offset;		
-		for(int[] i: ui.getBuildingEntrances(model.getBuildings())) {
-			g2d.setColor(Color.green);
-			// label the closest building with a different color			
-			if (closestEntrance[0] == i[0] && closestEntrance[1] == i[1])
-				g2d.setColor(Color.orange);
-				
-			g2d.fillOval(i[0] - offset, i[1] - offset, size, size);
-			g2d.setColor(Color.black);
-			g2d.drawOval(i[0] - offset - 1, i[1] - offset - 1, size + 2, size + 2);
+		// highlight the entrance closest to the mouse pointer
+		if (closestEntrance[0] != -1 || closestEntrance[1] != -1) {
+			g2d.setStroke(new BasicStroke(1, BasicStroke.JOIN_ROUND, BasicStroke.CAP_ROUND));
+			drawMarker(g2d, closestEntrance, Color.orange);
 		}
 		
 		// highlight the start building in green
 		if (pathStart != null) {
-			String[] s = ui.getBuildingLabel(model.getLabel(pathStart));
-			if (s != null) { 
-				int x = Integer.parseInt(s[1]);
-				int y = Integer.parseInt(s[2]);
-				g2d.setColor(Color.green);
-				g2d.drawString(s[0], x, y);
-			}
+			Location label = model.getLabel(pathStart);
+			if (label != null)
+				labelCache.draw(g2d, label, Color.green);
 		}
 		
 		// highlight the destination building in red
 		if (pathDest != null) {
-			String[] s = ui.getBuildingLabel(model.getLabel(pathDest));
-			if (s != null) {
-				int x = Integer.parseInt(s[1]);
-				int y = Integer.parseInt(s[2]);
-				g2d.setColor(Color.red);
-				g2d.drawString(s[0], x, y);
-			}
+			Location label = model.getLabel(pathDest);
+			if (label != null)
+				labelCache.draw(g2d, label, Color.red);
 		}	
+		counter.draw(g2d, getVisibleRect());
+	}
+	
+	// draws the map image inside area, returning false if it was only a stand-in for its
+	// scaled copy
+	private boolean paintBase(Graphics2D g2d, Rectangle area) {
+		g2d.setColor(getBackground());
+		g2d.fillRect(area.x, area.y, area.width, area.height);
+		return map.drawMap(g2d, this);
+	}
+	
+	// draws the building labels and entrance markers inside area, leaving the rest clear
+	private void paintOverlay(Graphics2D g2d, Rectangle area) {
+		// Print the building labels not hidden by higher ranked ones at this zoom
+		double[] range = ui.getNativeArea(area, LABEL_MARGIN);
+		List<Location> labels = placer.getShownLabels(model,
+				model.getLabelsIn(range[0], range[1], range[2], range[3]));
+		counter.count(labels.size(), 0);
+		labelCache.draw(g2d, labels);
+		
+		// Print small markers at each building entrance not hidden by another marker
+		g2d.setStroke(new BasicStroke(1, BasicStroke.JOIN_ROUND, BasicStroke.CAP_ROUND));
+		range = ui.getNativeArea(area, MARKER_MARGIN);
+		List<Location> entrances = placer.getShownEntrances(model,
+				model.getBuildingsIn(range[0], range[1], range[2], range[3]));
+		counter.count(entrances.size(), 0);
+		for(int[] i: ui.getBuildingEntrances(entrances))
+			drawMarker(g2d, i, Color.green);
+	}
+	
+	// asks the user whether to load the edits journaled since the map was last saved.
+	// Closing the dialog loads them, so they are only discarded by choice
+	private boolean confirmEdits() {
+		int choice = JOptionPane.showConfirmDialog(null,
+				"This map has edits made since it was last saved.\n"
+				+ "Load them? If not, the map maker discards them.", "Unsaved edits",
+				JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+		return choice != JOptionPane.NO_OPTION;
+	}
+	
+	// draws an entrance marker in color centered at the display location i
+	private void drawMarker(Graphics2D g2d, int[] i, Color color) {
+		int offset = 5, size = 2 * offset;
+		g2d.setColor(color);
+		g2d.fillOval(i[0] - offset, i[1] - offset, size, size);
+		g2d.setColor(Color.black);
+		g2d.drawOval(i[0] - offset - 1, i[1] - offset - 1, size + 2, size + 2);
 	}
 }
\ No newline at end of file